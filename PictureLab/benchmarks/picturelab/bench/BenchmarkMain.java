@@ -0,0 +1,86 @@
+package picturelab.bench;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the picture benchmarks with the usual JMH command line options and
+ * then prints the results per pixel.  The GC profiler is added unless
+ * other profilers are asked for, so the allocation per pixel is shown too.
+ *
+ * <pre>
+ *   mvn -Pbenchmarks package
+ *   java -jar target/benchmarks.jar                      (everything)
+ *   java -jar target/benchmarks.jar FilterBenchmark.sepia -p image=1920x1080
+ * </pre>
+ */
+public class BenchmarkMain
+{
+  public static void main(String[] args) throws Throwable
+  {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+    if (commandLine.getProfilers().isEmpty())
+      options.addProfiler(GCProfiler.class);
+
+    Collection<RunResult> results = new Runner(options.build()).run();
+    printPerPixel(results);
+  }
+
+  /** Prints ns/pixel and bytes/pixel for every result that has an image parameter */
+  private static void printPerPixel(Collection<RunResult> results) throws Throwable
+  {
+    System.out.println();
+    System.out.printf("%-50s %-22s %12s %14s%n", "Benchmark", "params", "ns/pixel", "bytes/pixel");
+    for (RunResult result : results)
+    {
+      String image = result.getParams().getParam("image");
+      if (image == null)
+        continue;
+      double pixels = pixels(image);
+      // the image and then any other parameters, so runs can be told apart
+      String label = image;
+      for (String key : result.getParams().getParamsKeys())
+        if (!key.equals("image"))
+          label += " " + key + "=" + result.getParams().getParam(key);
+      Result primary = result.getPrimaryResult();
+      double nanos = primary.getScore() * nanosPer(primary.getScoreUnit());
+
+      String allocation = "-";
+      for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet())
+        if (secondary.getKey().endsWith("gc.alloc.rate.norm"))
+          allocation = String.format("%.3f", secondary.getValue().getScore() / pixels);
+
+      System.out.printf("%-50s %-22s %12.3f %14s%n", result.getParams().getBenchmark(),
+                        label, nanos / pixels, allocation);
+    }
+  }
+
+  /** The number of pixels in the picture a benchmark parameter names */
+  private static double pixels(String image) throws Throwable
+  {
+    Object picture = Pictures.load(image, Pictures.imagesDir());
+    return (double) Pictures.width(picture) * Pictures.height(picture);
+  }
+
+  /** The number of nanoseconds in the time part of a JMH score unit like ms/op */
+  private static double nanosPer(String unit)
+  {
+    String time = unit.substring(0, unit.indexOf('/'));
+    switch (time)
+    {
+      case "s": return 1e9;
+      case "ms": return 1e6;
+      case "us": return 1e3;
+      default: return 1;
+    }
+  }
+}
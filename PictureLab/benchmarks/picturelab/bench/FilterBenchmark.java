@@ -0,0 +1,133 @@
+package picturelab.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times each Picture filter on synthetic pictures of several sizes and
+ * on photos from the images directory.  The picture is put back to its
+ * original pixels at the start of every call, so filters like
+ * edgeDetection always see a photo and not their own output.  The copy
+ * is timed too, so subtract the baseline benchmark (the copy alone).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBenchmark
+{
+  /** WIDTHxHEIGHT for a synthetic picture, or a file in the images directory */
+  @Param({"640x480", "1920x1080", "6000x4000", "beach.jpg", "CumberlandIsland.jpg"})
+  public String image;
+
+  Object picture;
+  Object overlay;
+  int width;
+  int height;
+  int[] original;
+
+  @Setup(Level.Trial)
+  public void load() throws Throwable
+  {
+    picture = Pictures.load(image, Pictures.imagesDir());
+    width = Pictures.width(picture);
+    height = Pictures.height(picture);
+    original = Pictures.data(picture).clone();
+    overlay = Pictures.synthetic(Math.max(width / 2, 1), Math.max(height / 2, 1));
+  }
+
+  /**
+   * Puts the picture back to its original pixels.  Every benchmark starts
+   * with this, so subtract the baseline benchmark's time to get the time
+   * of the filter alone.  (A Level.Invocation setup would keep the copy
+   * out of the timing, but JMH can't time calls this short reliably
+   * that way.)
+   */
+  void restore() throws Throwable
+  {
+    System.arraycopy(original, 0, Pictures.data(picture), 0, original.length);
+  }
+
+  @Benchmark
+  public void baseline() throws Throwable
+  {
+    restore();
+  }
+
+  @Benchmark
+  public void zeroBlue() throws Throwable
+  {
+    restore();
+    Pictures.ZERO_BLUE.invoke(picture);
+  }
+
+  @Benchmark
+  public void negate() throws Throwable
+  {
+    restore();
+    Pictures.NEGATE.invoke(picture, 0, 0, height, width);
+  }
+
+  @Benchmark
+  public void sepia() throws Throwable
+  {
+    restore();
+    Pictures.SEPIA.invoke(picture, 0, 0, height, width);
+  }
+
+  @Benchmark
+  public void posterizeCustomBinSize() throws Throwable
+  {
+    restore();
+    Pictures.POSTERIZE.invoke(picture, 0, 0, height, width, 8);
+  }
+
+  @Benchmark
+  public void mirrorVertical() throws Throwable
+  {
+    restore();
+    Pictures.MIRROR_VERTICAL.invoke(picture);
+  }
+
+  @Benchmark
+  public void copy() throws Throwable
+  {
+    restore();
+    Pictures.COPY.invoke(picture, overlay, height / 4, width / 4);
+  }
+
+  @Benchmark
+  public void copyAndMixColors() throws Throwable
+  {
+    restore();
+    Pictures.COPY_AND_MIX.invoke(picture, overlay, height / 4, width / 4);
+  }
+
+  @Benchmark
+  public void edgeDetection() throws Throwable
+  {
+    restore();
+    Pictures.EDGE_DETECTION.invoke(picture, 10);
+  }
+
+  @Benchmark
+  public Object scale() throws Throwable
+  {
+    restore();
+    return Pictures.SCALE.invoke(picture, 0.5, 0.5);
+  }
+}
@@ -0,0 +1,127 @@
+package picturelab.bench;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times SimplePicture loading and writing in JPEG and PNG.  Each picture
+ * is written to a temporary directory once in the setup, so the load
+ * benchmarks decode the same pixels the filter benchmarks use.  Loads
+ * are timed three ways: through the shared PictureCache when the file
+ * isn't in it yet (the cache is emptied first, like loading many
+ * different files), when it is (a hit, which shares the cached pixels),
+ * and skipping the cache the way BatchProcessor does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IoBenchmark
+{
+  /** WIDTHxHEIGHT for a synthetic picture, or a file in the images directory */
+  @Param({"640x480", "1920x1080", "6000x4000", "beach.jpg", "CumberlandIsland.jpg"})
+  public String image;
+
+  Object picture;
+  File directory;
+  String jpgFile;
+  String pngFile;
+  String outputJpgFile;
+  String outputPngFile;
+
+  @Setup(Level.Trial)
+  public void load() throws Throwable
+  {
+    picture = Pictures.load(image, Pictures.imagesDir());
+
+    directory = Files.createTempDirectory("picturelab").toFile();
+    jpgFile = new File(directory, "input.jpg").getPath();
+    pngFile = new File(directory, "input.png").getPath();
+    outputJpgFile = new File(directory, "output.jpg").getPath();
+    outputPngFile = new File(directory, "output.png").getPath();
+    if (!(boolean) Pictures.WRITE.invoke(picture, jpgFile) ||
+        !(boolean) Pictures.WRITE.invoke(picture, pngFile))
+      throw new IllegalStateException("could not write the input files to " + directory);
+  }
+
+  @TearDown(Level.Trial)
+  public void delete()
+  {
+    File[] files = directory.listFiles();
+    if (files != null)
+      for (File file : files)
+        file.delete();
+    directory.delete();
+  }
+
+  @Benchmark
+  public Object loadJpg() throws Throwable
+  {
+    Pictures.CLEAR_CACHE.invoke(Pictures.SHARED_CACHE.invoke());
+    return Pictures.NEW_FROM_FILE.invoke(jpgFile);
+  }
+
+  @Benchmark
+  public Object loadJpgCached() throws Throwable
+  {
+    return Pictures.NEW_FROM_FILE.invoke(jpgFile);
+  }
+
+  @Benchmark
+  public Object loadJpgUncached() throws Throwable
+  {
+    Object result = Pictures.NEW_BLANK.invoke(1, 1);
+    Pictures.LOAD.invoke(result, jpgFile, false);
+    return result;
+  }
+
+  @Benchmark
+  public Object loadPng() throws Throwable
+  {
+    Pictures.CLEAR_CACHE.invoke(Pictures.SHARED_CACHE.invoke());
+    return Pictures.NEW_FROM_FILE.invoke(pngFile);
+  }
+
+  @Benchmark
+  public Object loadPngCached() throws Throwable
+  {
+    return Pictures.NEW_FROM_FILE.invoke(pngFile);
+  }
+
+  @Benchmark
+  public Object loadPngUncached() throws Throwable
+  {
+    Object result = Pictures.NEW_BLANK.invoke(1, 1);
+    Pictures.LOAD.invoke(result, pngFile, false);
+    return result;
+  }
+
+  @Benchmark
+  public boolean writeJpg() throws Throwable
+  {
+    return (boolean) Pictures.WRITE.invoke(picture, outputJpgFile);
+  }
+
+  @Benchmark
+  public boolean writePng() throws Throwable
+  {
+    return (boolean) Pictures.WRITE.invoke(picture, outputPngFile);
+  }
+}
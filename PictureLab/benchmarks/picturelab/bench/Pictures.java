@@ -0,0 +1,171 @@
+package picturelab.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Handles on the picture lab classes.  The lab classes are in the
+ * default package so code in a named package (which JMH requires for
+ * benchmarks) can't name them; it calls them through these method
+ * handles instead.  The handles are static finals, so the JIT treats
+ * them as constants and the calls cost the same as direct ones.
+ */
+final class Pictures
+{
+  static final Class<?> PICTURE = find("Picture");
+  static final Class<?> PIXEL_RASTER = find("PixelRaster");
+  static final Class<?> TILE_EXECUTOR = find("TileExecutor");
+  static final Class<?> PICTURE_CACHE = find("PictureCache");
+
+  static final MethodHandle NEW_FROM_FILE = constructor(String.class);
+  static final MethodHandle NEW_BLANK = constructor(int.class, int.class);
+  static final MethodHandle NEW_COPY = constructor(PICTURE);
+
+  static final MethodHandle GET_WIDTH = method("getWidth", int.class);
+  static final MethodHandle GET_HEIGHT = method("getHeight", int.class);
+  static final MethodHandle GET_RASTER = method("getRaster", PIXEL_RASTER);
+  static final MethodHandle GET_BUFFERED_IMAGE = method("getBufferedImage",
+                                                        java.awt.image.BufferedImage.class);
+  static final MethodHandle RASTER_DATA = handle(PIXEL_RASTER, "getData", int[].class);
+  static final MethodHandle WRITE = method("write", boolean.class, String.class);
+  static final MethodHandle LOAD = method("loadOrFail", void.class, String.class, boolean.class);
+
+  static final MethodHandle ZERO_BLUE = method("zeroBlue", void.class);
+  static final MethodHandle NEGATE = region("negate");
+  static final MethodHandle SEPIA = region("sepia");
+  static final MethodHandle POSTERIZE = method("posterizeCustomBinSize", void.class,
+                                               int.class, int.class, int.class, int.class, int.class);
+  static final MethodHandle POSTERIZE_SINGLE_PASS = method("posterize", void.class,
+                                                           int.class, int.class, int.class, int.class, int.class);
+  static final MethodHandle MIRROR_VERTICAL = method("mirrorVertical", void.class);
+  static final MethodHandle COPY = method("copy", void.class, PICTURE, int.class, int.class);
+  static final MethodHandle COPY_AND_MIX = method("copyAndMixColors", void.class,
+                                                  PICTURE, int.class, int.class);
+  static final MethodHandle EDGE_DETECTION = method("edgeDetection", void.class, int.class);
+  static final MethodHandle SCALE = method("scale", PICTURE, double.class, double.class);
+  static final MethodHandle TRANSPOSE = method("transpose", PICTURE);
+  static final MethodHandle MIRROR_DIAGONAL = method("mirrorDiagonal", void.class);
+  static final MethodHandle ROTATE = method("rotate", PICTURE, double.class);
+  static final MethodHandle SET_POOL = staticHandle(TILE_EXECUTOR, "setPool", void.class,
+                                                    java.util.concurrent.ForkJoinPool.class);
+  static final MethodHandle SHARED_CACHE = staticHandle(PICTURE_CACHE, "getShared", PICTURE_CACHE);
+  static final MethodHandle CLEAR_CACHE = handle(PICTURE_CACHE, "clear", void.class);
+
+  private Pictures() {}
+
+  /**
+   * Makes a picture of the given size filled with a repeatable
+   * mix of gradients and noise, so it compresses and filters like
+   * a photo rather than a flat color.
+   */
+  static Object synthetic(int width, int height) throws Throwable
+  {
+    Object picture = NEW_BLANK.invoke(height, width);
+    int[] data = data(picture);
+    long seed = 42;
+    for (int y = 0; y < height; y++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        seed = seed * 6364136223846793005L + 1442695040888963407L;
+        int noise = (int) (seed >>> 59);
+        int red = (x * 255 / Math.max(width - 1, 1) + noise) & 0xff;
+        int green = (y * 255 / Math.max(height - 1, 1) + noise) & 0xff;
+        int blue = ((x + y) * 3 + noise) & 0xff;
+        data[y * width + x] = 0xff000000 | (red << 16) | (green << 8) | blue;
+      }
+    }
+    return picture;
+  }
+
+  /**
+   * Loads a picture for a benchmark parameter: either WIDTHxHEIGHT for a
+   * synthetic picture or the name of a file in the images directory.
+   */
+  static Object load(String image, String imagesDir) throws Throwable
+  {
+    int cross = image.indexOf('x');
+    if (cross > 0 && image.chars().allMatch(c -> c == 'x' || Character.isDigit(c)))
+      return synthetic(Integer.parseInt(image.substring(0, cross)),
+                       Integer.parseInt(image.substring(cross + 1)));
+    java.io.File file = new java.io.File(imagesDir, image);
+    if (!file.canRead())
+      throw new IllegalArgumentException("can't read " + file.getAbsolutePath() +
+                                         " (set -Dpicturelab.images to the images directory)");
+    return NEW_FROM_FILE.invoke(file.getPath());
+  }
+
+  /** The directory the file based benchmarks read from */
+  static String imagesDir()
+  {
+    return System.getProperty("picturelab.images", "images");
+  }
+
+  static int width(Object picture) throws Throwable
+  {
+    return (int) GET_WIDTH.invoke(picture);
+  }
+
+  static int height(Object picture) throws Throwable
+  {
+    return (int) GET_HEIGHT.invoke(picture);
+  }
+
+  /** The packed ARGB array behind a picture (its raster has no padding) */
+  static int[] data(Object picture) throws Throwable
+  {
+    return (int[]) RASTER_DATA.invoke(GET_RASTER.invoke(picture));
+  }
+
+  private static Class<?> find(String name)
+  {
+    try {
+      return Class.forName(name);
+    } catch (ClassNotFoundException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private static MethodHandle constructor(Class<?>... parameters)
+  {
+    try {
+      return MethodHandles.publicLookup().findConstructor(PICTURE,
+          MethodType.methodType(void.class, parameters));
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private static MethodHandle region(String name)
+  {
+    return method(name, void.class, int.class, int.class, int.class, int.class);
+  }
+
+  private static MethodHandle method(String name, Class<?> result, Class<?>... parameters)
+  {
+    return handle(PICTURE, name, result, parameters);
+  }
+
+  private static MethodHandle handle(Class<?> owner, String name, Class<?> result,
+                                     Class<?>... parameters)
+  {
+    try {
+      return MethodHandles.publicLookup().findVirtual(owner, name,
+          MethodType.methodType(result, parameters));
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private static MethodHandle staticHandle(Class<?> owner, String name, Class<?> result,
+                                           Class<?>... parameters)
+  {
+    try {
+      return MethodHandles.publicLookup().findStatic(owner, name,
+          MethodType.methodType(result, parameters));
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+}
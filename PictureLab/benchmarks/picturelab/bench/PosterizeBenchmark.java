@@ -0,0 +1,108 @@
+package picturelab.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares posterizing with a full pass over the picture per bin (the way
+ * posterizeCustomBinSize used to work) against the single pass table
+ * versions, for a few bin counts.  The per-bin version works on the raw
+ * array, so it only shows the cost of the extra passes and not the old
+ * per-pixel getter overhead on top.  Each call first puts the original
+ * pixels back, so subtract the baseline benchmark (the copy alone).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PosterizeBenchmark
+{
+  /** WIDTHxHEIGHT for a synthetic picture, or a file in the images directory */
+  @Param({"1920x1080", "6000x4000"})
+  public String image;
+
+  @Param({"1", "8", "64"})
+  public int bins;
+
+  Object picture;
+  int width;
+  int height;
+  int[] original;
+
+  @Setup(Level.Trial)
+  public void load() throws Throwable
+  {
+    picture = Pictures.load(image, Pictures.imagesDir());
+    width = Pictures.width(picture);
+    height = Pictures.height(picture);
+    original = Pictures.data(picture).clone();
+  }
+
+  /** Puts the picture back to its original pixels (see FilterBenchmark) */
+  void restore() throws Throwable
+  {
+    System.arraycopy(original, 0, Pictures.data(picture), 0, original.length);
+  }
+
+  @Benchmark
+  public void baseline() throws Throwable
+  {
+    restore();
+  }
+
+  @Benchmark
+  public void perBinPasses() throws Throwable
+  {
+    restore();
+    int[] data = Pictures.data(picture);
+    int binSize = 255 / bins;
+    for (int binNumber = 1; binNumber <= bins; binNumber++)
+    {
+      int lower = binSize * (binNumber - 1);
+      int higher = binSize * binNumber;
+      int middle = (higher + lower) / 2;
+      for (int index = 0; index < data.length; index++)
+      {
+        int value = data[index];
+        int red = (value >> 16) & 0xff;
+        int green = (value >> 8) & 0xff;
+        int blue = value & 0xff;
+        if (red < higher && red > lower)
+          red = middle;
+        if (green < higher && green > lower)
+          green = middle;
+        if (blue < higher && blue > lower)
+          blue = middle;
+        data[index] = (value & 0xff000000) | (red << 16) | (green << 8) | blue;
+      }
+    }
+  }
+
+  @Benchmark
+  public void posterizeCustomBinSize() throws Throwable
+  {
+    restore();
+    Pictures.POSTERIZE.invoke(picture, 0, 0, height, width, bins);
+  }
+
+  @Benchmark
+  public void posterize() throws Throwable
+  {
+    restore();
+    Pictures.POSTERIZE_SINGLE_PASS.invoke(picture, 0, 0, height, width, bins);
+  }
+}
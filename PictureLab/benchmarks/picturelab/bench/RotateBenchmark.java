@@ -0,0 +1,77 @@
+package picturelab.bench;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares turning a picture by a small angle (like deskewing a scan)
+ * with Picture.rotate against Java2D's bilinear AffineTransformOp into
+ * an image of the same size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RotateBenchmark
+{
+  /** WIDTHxHEIGHT for a synthetic picture, or a file in the images directory */
+  @Param({"1920x1080", "4000x3000"})
+  public String image;
+
+  @Param({"3.5"})
+  public double degrees;
+
+  Object picture;
+  BufferedImage buffered;
+  AffineTransformOp op;
+  int newWidth;
+  int newHeight;
+
+  @Setup(Level.Trial)
+  public void load() throws Throwable
+  {
+    picture = Pictures.load(image, Pictures.imagesDir());
+    buffered = (BufferedImage) Pictures.GET_BUFFERED_IMAGE.invoke(picture);
+
+    // the same turn, moved so the result starts at (0, 0)
+    AffineTransform turn = AffineTransform.getRotateInstance(Math.toRadians(degrees));
+    Rectangle2D bounds = turn.createTransformedShape(
+        new Rectangle2D.Double(0, 0, buffered.getWidth() - 1, buffered.getHeight() - 1))
+      .getBounds2D();
+    turn.preConcatenate(AffineTransform.getTranslateInstance(-bounds.getX(), -bounds.getY()));
+    op = new AffineTransformOp(turn, AffineTransformOp.TYPE_BILINEAR);
+    newWidth = (int) Math.ceil(bounds.getWidth() + 1);
+    newHeight = (int) Math.ceil(bounds.getHeight() + 1);
+  }
+
+  @Benchmark
+  public BufferedImage affineTransformOp()
+  {
+    BufferedImage result = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+    return op.filter(buffered, result);
+  }
+
+  @Benchmark
+  public Object rotate() throws Throwable
+  {
+    return Pictures.ROTATE.invoke(picture, degrees);
+  }
+}
@@ -0,0 +1,97 @@
+package picturelab.bench;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares transposing with a plain row by row loop (which writes down a
+ * column, touching a new cache line for every pixel) against the
+ * recursively blocked transpose, and times the in place diagonal mirror.
+ * The plain loop runs on one thread, so compare it with the threads=1
+ * runs, where the lab's pool has one thread too and only the order the
+ * pixels are copied in differs.  threads=0 uses the shared pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransposeBenchmark
+{
+  /** WIDTHxHEIGHT for a synthetic picture, or a file in the images directory */
+  @Param({"1920x1080", "7680x4320"})
+  public String image;
+
+  /** the number of threads in the TileExecutor pool (0 for the common pool) */
+  @Param({"1", "0"})
+  public int threads;
+
+  Object picture;
+  ForkJoinPool pool;
+  int width;
+  int height;
+
+  @Setup(Level.Trial)
+  public void load() throws Throwable
+  {
+    picture = Pictures.load(image, Pictures.imagesDir());
+    width = Pictures.width(picture);
+    height = Pictures.height(picture);
+    if (threads > 0)
+    {
+      pool = new ForkJoinPool(threads);
+      Pictures.SET_POOL.invoke(pool);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void restorePool() throws Throwable
+  {
+    if (pool != null)
+    {
+      Pictures.SET_POOL.invoke(ForkJoinPool.commonPool());
+      pool.shutdown();
+    }
+  }
+
+  @Benchmark
+  public Object naiveRowColumn() throws Throwable
+  {
+    // a new picture each time like transpose makes, so only the copy differs
+    Object result = Pictures.NEW_BLANK.invoke(width, height);
+    int[] data = Pictures.data(picture);
+    int[] transposed = Pictures.data(result);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        transposed[x * height + y] = data[y * width + x];
+    return result;
+  }
+
+  @Benchmark
+  public Object transpose() throws Throwable
+  {
+    return Pictures.TRANSPOSE.invoke(picture);
+  }
+
+  @Benchmark
+  public void mirrorDiagonal() throws Throwable
+  {
+    // the lower triangle is left alone, so every call does the same copy
+    Pictures.MIRROR_DIAGONAL.invoke(picture);
+  }
+}
@@ -0,0 +1,479 @@
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Class that rotates, scales or shears a picture by any amount with an
+ * AffineTransform.  The new picture is sized with
+ * SimplePicture.getTransformEnclosingRect so it just holds the changed
+ * picture, and the parts of it the old picture doesn't cover are filled
+ * with a background color.
+ *
+ * Each new pixel is found by working back to where it came from in the
+ * old picture.  Along a row that place moves the same amount for every
+ * pixel, so it is only worked out for the first pixel of the row and
+ * after that just added to, in whole numbers with 32 bits of fraction.
+ * The columns where all the old pixels used are inside the old picture
+ * are worked out for each row first, so only the few pixels near its
+ * edges have to check.  Rows are done at the same time on the
+ * TileExecutor pool.
+ */
+public class AffineWarp
+{
+
+  /**
+   * The ways to get a new pixel from the old ones around where it
+   * came from
+   */
+  public enum Sampling
+  {
+    /** use the nearest old pixel (blocky, fastest) */
+    NEAREST,
+    /** blend the nearest 2 by 2 pixels in straight lines */
+    BILINEAR
+  }
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the number of fraction bits in the old picture positions */
+  private static final int FRACTION_BITS = 32;
+
+  /** 1 with FRACTION_BITS fraction bits */
+  private static final double ONE = 1L << FRACTION_BITS;
+
+  /** how far a size can be over a whole number and still be rounded down */
+  private static final double SIZE_SLACK = 1e-6;
+
+  /** how far inside the old picture a position must be to skip the edge checks */
+  private static final double MARGIN = 1e-3;
+
+  ////////////////////////// Methods //////////////////////////////////
+
+  /**
+   * Method to make a copy of a picture turned by any angle, blending
+   * the pixels with bilinear sampling
+   * @param source the picture to turn
+   * @param degrees the angle to turn it clockwise in degrees
+   * @return the new picture
+   */
+  public static Picture rotate(SimplePicture source, double degrees)
+  {
+    return rotate(source, degrees, Sampling.BILINEAR);
+  }
+
+  /**
+   * Method to make a copy of a picture turned by any angle
+   * @param source the picture to turn
+   * @param degrees the angle to turn it clockwise in degrees
+   * @param sampling the way to get the new pixels
+   * @return the new picture
+   */
+  public static Picture rotate(SimplePicture source, double degrees, Sampling sampling)
+  {
+    return warp(source, AffineTransform.getRotateInstance(Math.toRadians(degrees)), sampling);
+  }
+
+  /**
+   * Method to make a copy of a picture changed by a transform.  The
+   * corners are white, or clear if the picture uses alpha.
+   * @param source the picture to change
+   * @param transform the transform (its translation doesn't matter)
+   * @param sampling the way to get the new pixels
+   * @return the new picture
+   */
+  public static Picture warp(SimplePicture source, AffineTransform transform,
+                             Sampling sampling)
+  {
+    Color background = source.getRaster().hasAlpha() ? new Color(0, 0, 0, 0) : Color.white;
+    return warp(source, transform, sampling, background);
+  }
+
+  /**
+   * Method to make a copy of a picture changed by a transform.  The new
+   * picture uses alpha if the old one does or the background isn't
+   * fully opaque.
+   * @param source the picture to change
+   * @param transform the transform (its translation doesn't matter)
+   * @param sampling the way to get the new pixels
+   * @param background the color for the parts the old picture doesn't cover
+   * @return the new picture
+   */
+  public static Picture warp(SimplePicture source, AffineTransform transform,
+                             Sampling sampling, Color background)
+  {
+    // only the rotate, scale and shear parts are used since the new
+    // picture is cut to fit whatever the translation is
+    AffineTransform linear = new AffineTransform(transform.getScaleX(),
+                                                 transform.getShearY(),
+                                                 transform.getShearX(),
+                                                 transform.getScaleY(), 0, 0);
+    AffineTransform inverse;
+    try {
+      inverse = linear.createInverse();
+    } catch (NoninvertibleTransformException ex) {
+      throw new IllegalArgumentException("the transform flattens the picture so it can't be drawn");
+    }
+
+    // size the new picture to fit and center the old one in it
+    Rectangle2D rect = source.getTransformEnclosingRect(linear);
+    int width = Math.max(1, (int) Math.ceil(rect.getWidth() - SIZE_SLACK));
+    int height = Math.max(1, (int) Math.ceil(rect.getHeight() - SIZE_SLACK));
+    double originX = rect.getX() + (rect.getWidth() - width) / 2;
+    double originY = rect.getY() + (rect.getHeight() - height) / 2;
+
+    PixelRaster from = source.getRaster();
+    boolean hasAlpha = from.hasAlpha() || background.getAlpha() < 255;
+    BufferedImage image = new BufferedImage(width, height, hasAlpha ?
+                                            BufferedImage.TYPE_INT_ARGB :
+                                            BufferedImage.TYPE_INT_RGB);
+    PixelRaster to = PixelRaster.wrap(image);
+    Warper warper = new Warper(from, to, inverse, originX, originY,
+                               sampling, background.getRGB());
+    TileExecutor.executeRows(0, 0, height, width, (startRow, startCol, endRow, endCol) ->
+    {
+      for (int row = startRow; row < endRow; row++)
+        warper.warpRow(row);
+    });
+    return new Picture(image);
+  }
+
+  /**
+   * Class that makes the rows of a new picture from an old one
+   */
+  private static class Warper
+  {
+    /** the old pixels */
+    private int[] from;
+
+    /** the index of the old (0, 0) */
+    private int fromStart;
+
+    /** the distance in the old pixels from one row to the next */
+    private int fromStride;
+
+    /** the old width */
+    private int fromWidth;
+
+    /** the old height */
+    private int fromHeight;
+
+    /** bits to OR into each old pixel */
+    private int alphaBits;
+
+    /** the new pixels */
+    private PixelRaster to;
+
+    /** how far the old x and y move for one new column across */
+    private double stepX, stepY;
+
+    /** how far the old x and y move for one new row down */
+    private double rowStepX, rowStepY;
+
+    /** the old x and y for the new (0, 0) */
+    private double startX, startY;
+
+    /** the way to get the new pixels */
+    private Sampling sampling;
+
+    /** the packed background color */
+    private int background;
+
+    /**
+     * Constructor that works out how the old positions change
+     * @param from the old pixels
+     * @param to the new pixels
+     * @param inverse the transform from new positions to old ones
+     * @param originX the x the new (0, 0) has before working back
+     * @param originY the y the new (0, 0) has before working back
+     * @param sampling the way to get the new pixels
+     * @param background the packed background color
+     */
+    Warper(PixelRaster from, PixelRaster to, AffineTransform inverse,
+           double originX, double originY, Sampling sampling, int background)
+    {
+      this.from = from.getData();
+      fromStart = from.getIndex(0, 0);
+      fromStride = from.getScanlineStride();
+      fromWidth = from.getWidth();
+      fromHeight = from.getHeight();
+      alphaBits = from.hasAlpha() ? 0 : 0xff000000;
+      this.to = to;
+      this.sampling = sampling;
+      this.background = background;
+      stepX = inverse.getScaleX();
+      stepY = inverse.getShearY();
+      rowStepX = inverse.getShearX();
+      rowStepY = inverse.getScaleY();
+      startX = originX * stepX + originY * rowStepX;
+      startY = originX * stepY + originY * rowStepY;
+
+      // the nearest pixel is the one the position rounds to
+      if (sampling == Sampling.NEAREST)
+      {
+        startX += 0.5;
+        startY += 0.5;
+      }
+    }
+
+    /**
+     * Method to make one row of the new picture.  The row is cut into the
+     * columns outside the old picture (the background), the columns near
+     * its edges (checked a pixel at a time) and the columns inside.
+     * @param row the new row to make
+     */
+    void warpRow(int row)
+    {
+      int width = to.getWidth();
+      double rowX = startX + row * rowStepX;
+      double rowY = startY + row * rowStepY;
+
+      // inside means every old pixel read is in the old picture (kept a
+      // little way in so rounding can't matter), and the edges are
+      // anywhere some of them might be (a column more each way)
+      double lastX = (sampling == Sampling.NEAREST ? fromWidth : fromWidth - 1) - MARGIN;
+      double lastY = (sampling == Sampling.NEAREST ? fromHeight : fromHeight - 1) - MARGIN;
+      int edgeStart = Math.max(firstColumn(rowX, stepX, -1, fromWidth, width),
+                               firstColumn(rowY, stepY, -1, fromHeight, width)) - 1;
+      int edgeEnd = Math.min(lastColumn(rowX, stepX, -1, fromWidth, width),
+                             lastColumn(rowY, stepY, -1, fromHeight, width)) + 2;
+      int insideStart = Math.max(firstColumn(rowX, stepX, MARGIN, lastX, width),
+                                 firstColumn(rowY, stepY, MARGIN, lastY, width));
+      int insideEnd = Math.min(lastColumn(rowX, stepX, MARGIN, lastX, width),
+                               lastColumn(rowY, stepY, MARGIN, lastY, width)) + 1;
+      edgeStart = clamp(edgeStart, 0, width);
+      edgeEnd = clamp(edgeEnd, edgeStart, width);
+      insideStart = clamp(insideStart, edgeStart, edgeEnd);
+      insideEnd = clamp(insideEnd, insideStart, edgeEnd);
+
+      int[] toData = to.getData();
+      int toIndex = to.getIndex(0, row);
+      for (int col = 0; col < edgeStart; col++)
+        toData[toIndex + col] = background;
+      for (int col = edgeStart; col < insideStart; col++)
+        toData[toIndex + col] = edgePixel(rowX + col * stepX, rowY + col * stepY);
+      if (sampling == Sampling.NEAREST)
+        insideNearest(rowX, rowY, insideStart, insideEnd, toData, toIndex);
+      else
+        insideBilinear(rowX, rowY, insideStart, insideEnd, toData, toIndex);
+      for (int col = insideEnd; col < edgeEnd; col++)
+        toData[toIndex + col] = edgePixel(rowX + col * stepX, rowY + col * stepY);
+      for (int col = edgeEnd; col < width; col++)
+        toData[toIndex + col] = background;
+    }
+
+    /**
+     * Method to copy the nearest old pixels for new columns that are
+     * all inside the old picture
+     * @param rowX the old x for column 0 (already moved half a pixel)
+     * @param rowY the old y for column 0 (already moved half a pixel)
+     * @param startCol the first column to make
+     * @param endCol the column to stop before
+     * @param toData the new pixels
+     * @param toIndex the index of column 0 of the row in the new pixels
+     */
+    private void insideNearest(double rowX, double rowY, int startCol, int endCol,
+                               int[] toData, int toIndex)
+    {
+      long x = toFixed(rowX + startCol * stepX);
+      long y = toFixed(rowY + startCol * stepY);
+      long dx = toFixed(stepX);
+      long dy = toFixed(stepY);
+      for (int col = startCol; col < endCol; col++)
+      {
+        int index = fromStart + (int) (y >> FRACTION_BITS) * fromStride +
+          (int) (x >> FRACTION_BITS);
+        toData[toIndex + col] = from[index] | alphaBits;
+        x += dx;
+        y += dy;
+      }
+    }
+
+    /**
+     * Method to blend the nearest 2 by 2 old pixels for new columns that
+     * are all inside the old picture
+     * @param rowX the old x for column 0
+     * @param rowY the old y for column 0
+     * @param startCol the first column to make
+     * @param endCol the column to stop before
+     * @param toData the new pixels
+     * @param toIndex the index of column 0 of the row in the new pixels
+     */
+    private void insideBilinear(double rowX, double rowY, int startCol, int endCol,
+                                int[] toData, int toIndex)
+    {
+      long x = toFixed(rowX + startCol * stepX);
+      long y = toFixed(rowY + startCol * stepY);
+      long dx = toFixed(stepX);
+      long dy = toFixed(stepY);
+      for (int col = startCol; col < endCol; col++)
+      {
+        int index = fromStart + (int) (y >> FRACTION_BITS) * fromStride +
+          (int) (x >> FRACTION_BITS);
+        int fractionX = (int) (x >>> (FRACTION_BITS - 8)) & 0xff;
+        int fractionY = (int) (y >>> (FRACTION_BITS - 8)) & 0xff;
+        int topLeft = from[index] | alphaBits;
+        int topRight = from[index + 1] | alphaBits;
+        int bottomLeft = from[index + fromStride] | alphaBits;
+        int bottomRight = from[index + fromStride + 1] | alphaBits;
+        if (alphaBits != 0)
+          toData[toIndex + col] = mix(mix(topLeft, topRight, fractionX),
+                                      mix(bottomLeft, bottomRight, fractionX), fractionY);
+        else
+          toData[toIndex + col] = blend(topLeft, topRight, bottomLeft, bottomRight,
+                                        fractionX, fractionY);
+        x += dx;
+        y += dy;
+      }
+    }
+
+    /**
+     * Method to make a new pixel that may be near or past the edge of the
+     * old picture, counting the old pixels outside it as the background
+     * @param x the old x (already moved half a pixel for NEAREST)
+     * @param y the old y (already moved half a pixel for NEAREST)
+     * @return the new pixel
+     */
+    private int edgePixel(double x, double y)
+    {
+      int left = (int) Math.floor(x);
+      int top = (int) Math.floor(y);
+      if (sampling == Sampling.NEAREST)
+        return oldPixel(left, top);
+
+      int fractionX = (int) ((x - left) * 256);
+      int fractionY = (int) ((y - top) * 256);
+      return blend(oldPixel(left, top), oldPixel(left + 1, top),
+                   oldPixel(left, top + 1), oldPixel(left + 1, top + 1),
+                   fractionX, fractionY);
+    }
+
+    /**
+     * Method to get an old pixel, or the background if it is outside
+     * @param x the old x
+     * @param y the old y
+     * @return the packed pixel
+     */
+    private int oldPixel(int x, int y)
+    {
+      if (x < 0 || y < 0 || x >= fromWidth || y >= fromHeight)
+        return background;
+      return from[fromStart + y * fromStride + x] | alphaBits;
+    }
+
+    /**
+     * Method to find the first column where a position that moves step
+     * each column is at least low and at most high
+     * @param start the position at column 0
+     * @param step how far it moves each column
+     * @param low the lowest position
+     * @param high the highest position
+     * @param width the number of columns
+     * @return the first column (width if there is none)
+     */
+    private static int firstColumn(double start, double step, double low, double high,
+                                   int width)
+    {
+      if (step == 0)
+        return start >= low && start <= high ? 0 : width;
+      double column = ((step > 0 ? low : high) - start) / step;
+      return (int) Math.ceil(Math.max(-1, Math.min(width, column)));
+    }
+
+    /**
+     * Method to find the last column where a position that moves step
+     * each column is at least low and at most high
+     * @param start the position at column 0
+     * @param step how far it moves each column
+     * @param low the lowest position
+     * @param high the highest position
+     * @param width the number of columns
+     * @return the last column (-1 if there is none)
+     */
+    private static int lastColumn(double start, double step, double low, double high,
+                                  int width)
+    {
+      if (step == 0)
+        return start >= low && start <= high ? width - 1 : -1;
+      double column = ((step > 0 ? high : low) - start) / step;
+      return (int) Math.floor(Math.max(-1, Math.min(width, column)));
+    }
+  }
+
+  /**
+   * Method to blend two opaque pixels, doing two channels at a time in
+   * one int (alpha and green, red and blue) since each product fits in
+   * 16 bits
+   * @param first the first packed pixel
+   * @param second the second packed pixel
+   * @param fraction how much of the second to use (0-255 out of 256)
+   * @return the blended pixel
+   */
+  private static int mix(int first, int second, int fraction)
+  {
+    int rest = 256 - fraction;
+    int redBlue = (((first & 0xff00ff) * rest + (second & 0xff00ff) * fraction + 0x800080)
+                   >>> 8) & 0xff00ff;
+    int alphaGreen = (((first >>> 8) & 0xff00ff) * rest + ((second >>> 8) & 0xff00ff) * fraction
+                      + 0x800080) & 0xff00ff00;
+    return alphaGreen | redBlue;
+  }
+
+  /**
+   * Method to blend 2 by 2 pixels that may not be opaque.  Each color is
+   * weighted by its alpha too, so clear pixels (like a clear background
+   * past the edge) don't darken the colors next to them.
+   * @param topLeft the top left packed pixel
+   * @param topRight the top right packed pixel
+   * @param bottomLeft the bottom left packed pixel
+   * @param bottomRight the bottom right packed pixel
+   * @param fractionX how much of the right pixels to use (0-255 out of 256)
+   * @param fractionY how much of the bottom pixels to use (0-255 out of 256)
+   * @return the blended pixel
+   */
+  private static int blend(int topLeft, int topRight, int bottomLeft, int bottomRight,
+                           int fractionX, int fractionY)
+  {
+    int left = 256 - fractionX;
+    int up = 256 - fractionY;
+    long alpha = 0;
+    long red = 0;
+    long green = 0;
+    long blue = 0;
+    for (int i = 0; i < 4; i++)
+    {
+      int value = i == 0 ? topLeft : i == 1 ? topRight : i == 2 ? bottomLeft : bottomRight;
+      long weight = (long) ((i & 1) == 0 ? left : fractionX) *
+        ((i & 2) == 0 ? up : fractionY) * (value >>> 24);
+      alpha += weight;
+      red += weight * ((value >> 16) & 0xff);
+      green += weight * ((value >> 8) & 0xff);
+      blue += weight * (value & 0xff);
+    }
+    if (alpha == 0)
+      return 0;
+    return (int) ((alpha + (1 << 15)) >> 16) << 24 |
+      (int) ((red + alpha / 2) / alpha) << 16 |
+      (int) ((green + alpha / 2) / alpha) << 8 |
+      (int) ((blue + alpha / 2) / alpha);
+  }
+
+  /**
+   * Method to turn a position into a whole number with FRACTION_BITS
+   * fraction bits
+   * @param value the position
+   * @return the whole number
+   */
+  private static long toFixed(double value)
+  {
+    return Math.round(value * ONE);
+  }
+
+  /** Method to keep a value from low to high */
+  private static int clamp(int value, int low, int high)
+  {
+    return value < low ? low : value > high ? high : value;
+  }
+
+}
@@ -0,0 +1,199 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that loads and writes pictures in the background.  load and
+ * write return right away with a CompletableFuture that finishes when
+ * the file has been read or written, so many files can be read from
+ * the disk while other pictures are being filtered:
+ *
+ * <pre>
+ *   AsyncPictureIO io = AsyncPictureIO.getShared();
+ *   io.load("beach.jpg")
+ *     .thenApply(picture -> { picture.negate(0, 0, picture.getHeight(), picture.getWidth()); return picture; })
+ *     .thenCompose(picture -> io.write(picture, "beachNegated.jpg"));
+ * </pre>
+ *
+ * On a Java that has virtual threads each load and write gets its own
+ * virtual thread.  Otherwise a pool of ordinary threads, as big as the
+ * caps, is used.  Only a few decodes run at a time (a decoded picture
+ * can be much bigger than its file), and the same goes for writes.
+ * Others wait for a turn without holding a picture in memory.
+ *
+ * A failed load or write finishes its future exceptionally with an
+ * UncheckedIOException around the IOException from loadOrFail or
+ * writeOrFail.
+ */
+public class AsyncPictureIO implements AutoCloseable
+{
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the default number of decodes (and of writes) that run at once */
+  public static final int DEFAULT_MAX_CONCURRENT =
+    Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+
+  /** the shared instance (made when first asked for) */
+  private static AsyncPictureIO shared;
+
+  /** the threads the loads and writes run on */
+  private ExecutorService executor;
+
+  /** true if the executor makes virtual threads */
+  private boolean virtualThreads;
+
+  /** the turns for decoding */
+  private Semaphore decodes;
+
+  /** the turns for writing */
+  private Semaphore writes;
+
+  ////////////////////// constructors /////////////////////////////////
+
+  /**
+   * A constructor that uses the default caps
+   */
+  public AsyncPictureIO()
+  {
+    this(DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_CONCURRENT);
+  }
+
+  /**
+   * A constructor that takes the caps
+   * @param maxConcurrentDecodes the most loads that decode at once
+   * @param maxConcurrentWrites the most writes that encode at once
+   */
+  public AsyncPictureIO(int maxConcurrentDecodes, int maxConcurrentWrites)
+  {
+    if (maxConcurrentDecodes < 1 || maxConcurrentWrites < 1)
+      throw new IllegalArgumentException("the caps must be at least 1");
+    decodes = new Semaphore(maxConcurrentDecodes, true);
+    writes = new Semaphore(maxConcurrentWrites, true);
+    executor = newVirtualThreadExecutor();
+    virtualThreads = executor != null;
+    if (executor == null)
+      executor = Executors.newFixedThreadPool(maxConcurrentDecodes + maxConcurrentWrites,
+                                              daemonThreads());
+  }
+
+  ///////////////////////// methods //////////////////////////////
+
+  /**
+   * Method to get an instance shared by everyone, with the default caps
+   * @return the shared instance
+   */
+  public static synchronized AsyncPictureIO getShared()
+  {
+    if (shared == null)
+      shared = new AsyncPictureIO();
+    return shared;
+  }
+
+  /**
+   * Method to make an executor with a virtual thread per task, if this
+   * Java has them (Java 21 and later).  Reflection is used so this
+   * still compiles for older Javas.
+   * @return the executor or null if there are no virtual threads
+   */
+  private static ExecutorService newVirtualThreadExecutor()
+  {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Method to get a factory for named daemon threads, so the pool
+   * doesn't keep the program running
+   * @return the thread factory
+   */
+  private static ThreadFactory daemonThreads()
+  {
+    AtomicInteger count = new AtomicInteger();
+    return task ->
+    {
+      Thread thread = new Thread(task, "AsyncPictureIO-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Method to check if loads and writes run on virtual threads
+   * @return true if they do
+   */
+  public boolean usesVirtualThreads() { return virtualThreads; }
+
+  /**
+   * Method to load a picture in the background.  The file name is
+   * found the same way Picture does (in the media directory if it
+   * can't be read as is).  The file is always decoded and not kept in
+   * the picture cache.
+   * @param fileName the file to load
+   * @return a future for the picture
+   */
+  public CompletableFuture<Picture> load(String fileName)
+  {
+    return CompletableFuture.supplyAsync(() ->
+    {
+      decodes.acquireUninterruptibly();
+      try {
+        Picture picture = new Picture(1, 1);
+        picture.loadOrFail(fileName, false);
+        return picture;
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      } finally {
+        decodes.release();
+      }
+    }, executor);
+  }
+
+  /**
+   * Method to write a picture in the background.  The picture shouldn't
+   * be changed until the future finishes.
+   * @param picture the picture to write
+   * @param fileName the file to write to (its extension picks the format)
+   * @return a future for the same picture, finished once it is written
+   */
+  public <T extends SimplePicture> CompletableFuture<T> write(T picture, String fileName)
+  {
+    return CompletableFuture.supplyAsync(() ->
+    {
+      writes.acquireUninterruptibly();
+      try {
+        picture.writeOrFail(fileName);
+        return picture;
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      } finally {
+        writes.release();
+      }
+    }, executor);
+  }
+
+  /**
+   * Method to stop taking new loads and writes.  The ones already
+   * started still finish.
+   */
+  public void close()
+  {
+    synchronized (AsyncPictureIO.class)
+    {
+      if (shared == this)
+        shared = null;
+    }
+    executor.shutdown();
+  }
+
+}
@@ -0,0 +1,190 @@
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Class that decodes a picture file one horizontal band of rows at a
+ * time, using a source region of an ImageReader.  It is shared by
+ * StreamingPictureProcessor and MappedPicture.
+ *
+ * A band can only be decoded on its own if the reader can find its
+ * rows without decoding the rows above them.  BMP files (and TIFF
+ * files without compression) can jump straight to any row, and other
+ * TIFF files are stored in strips or tiles that can each be decoded
+ * alone, so the bands are lined up with the strips.  JPEG, PNG, and
+ * GIF readers (and TIFF files stored as one strip) would decode the
+ * file from the top again for every band, which makes reading take
+ * time that grows with the square of the number of bands, so those
+ * files are read as one band holding the whole picture.  That is only
+ * done if the picture fits easily in the free heap; if it doesn't, an
+ * IOException says so instead of running out of memory part way.
+ */
+public class BandReader
+{
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the bytes of heap a pixel of a whole picture is counted as using
+   * (the decoded pixels and the packed int copy of them) */
+  private static final int BYTES_PER_PIXEL = 8;
+
+  /** the reader with its input set */
+  private ImageReader reader;
+
+  /** the width of the picture in the file */
+  private int inputWidth;
+
+  /** the height of the picture in the file */
+  private int inputHeight;
+
+  /** use every subsamplingX-th column of the file */
+  private int subsamplingX;
+
+  /** use every subsamplingY-th row of the file */
+  private int subsamplingY;
+
+  /** the number of rows of the file in each band */
+  private int rowsPerBand;
+
+  ////////////////////// constructors /////////////////////////////////
+
+  /**
+   * A constructor that takes a reader and how to cut the picture up
+   * @param reader the reader with its input set (to image 0)
+   * @param bandHeight about how many rows of the file to decode at a time
+   * @param subsamplingX use every subsamplingX-th column (1 for all)
+   * @param subsamplingY use every subsamplingY-th row (1 for all)
+   * @throws IOException if the file can't be read, or has to be read
+   * whole and is too big for the heap
+   */
+  public BandReader(ImageReader reader, int bandHeight, int subsamplingX,
+                    int subsamplingY) throws IOException
+  {
+    if (bandHeight < 1 || subsamplingX < 1 || subsamplingY < 1)
+      throw new IllegalArgumentException("band height and subsampling must be at least 1");
+    this.reader = reader;
+    this.subsamplingX = subsamplingX;
+    this.subsamplingY = subsamplingY;
+    inputWidth = reader.getWidth(0);
+    inputHeight = reader.getHeight(0);
+
+    // keep the bands lined up with the subsampling so no rows are
+    // skipped twice, and with the strips so no strip is decoded twice
+    int step = subsamplingY;
+    if (!reader.isRandomAccessEasy(0))
+    {
+      int stripHeight = Math.max(reader.getTileHeight(0), 1);
+      step = stripHeight / gcd(stripHeight, subsamplingY) * subsamplingY;
+    }
+    rowsPerBand = Math.max(bandHeight / step, 1) * step;
+    if (!canReadBands(reader) || rowsPerBand >= inputHeight)
+    {
+      rowsPerBand = inputHeight;
+      checkFits(getWidth(), getHeight(), "Only BMP files and TIFF files stored in " +
+                "strips or tiles can be read a band at a time; convert the file, use " +
+                "subsampling, or give Java more memory (-Xmx)");
+    }
+  }
+
+  ///////////////////////// methods //////////////////////////////
+
+  /**
+   * Method to check if a reader can decode a band of rows without
+   * decoding the rows above it
+   * @param reader the reader with its input set (to image 0)
+   * @return true if bands can be read one at a time
+   * @throws IOException if the file can't be read
+   */
+  public static boolean canReadBands(ImageReader reader) throws IOException
+  {
+    return reader.isRandomAccessEasy(0) ||
+      reader.getTileHeight(0) < reader.getHeight(0);
+  }
+
+  /**
+   * Method to check that a picture of the given size fits easily in
+   * the free heap
+   * @param width the width in pixels
+   * @param height the height in pixels
+   * @param advice what to do about it, added to the error message
+   * @throws IOException if it doesn't
+   */
+  public static void checkFits(int width, int height, String advice) throws IOException
+  {
+    Runtime runtime = Runtime.getRuntime();
+    long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    long needed = (long) BYTES_PER_PIXEL * width * height;
+    if (needed > free / 4 * 3)
+      throw new IOException("a " + width + " by " + height + " picture needs about " +
+                            (needed >> 20) + " MB but only " + (free >> 20) +
+                            " MB of the heap is free.  " + advice);
+  }
+
+  /**
+   * Method to find the greatest common divisor of two numbers
+   * @param a the first number
+   * @param b the second number
+   * @return the greatest number both can be divided by
+   */
+  private static int gcd(int a, int b)
+  {
+    while (b != 0)
+    {
+      int rest = a % b;
+      a = b;
+      b = rest;
+    }
+    return a;
+  }
+
+  /**
+   * Method to check if the picture is read in more than one band
+   * @return true if a band holds less than the whole picture
+   */
+  public boolean isBanded() { return rowsPerBand < inputHeight; }
+
+  /** @return the width of the decoded picture (after subsampling) */
+  public int getWidth() { return (inputWidth + subsamplingX - 1) / subsamplingX; }
+
+  /** @return the height of the decoded picture (after subsampling) */
+  public int getHeight() { return (inputHeight + subsamplingY - 1) / subsamplingY; }
+
+  /** @return the number of bands */
+  public int getBandCount() { return (inputHeight + rowsPerBand - 1) / rowsPerBand; }
+
+  /** @return the number of decoded rows in every band but the last */
+  public int getBandHeight() { return isBanded() ? rowsPerBand / subsamplingY : getHeight(); }
+
+  /**
+   * Method to get the first decoded row of a band
+   * @param band the band (0 is the top one)
+   * @return the row of the decoded picture the band starts at
+   */
+  public int getBandRow(int band) { return band * getBandHeight(); }
+
+  /**
+   * Method to decode one band
+   * @param band the band (0 is the top one)
+   * @return the pixels of the band, stored as packed ints
+   * (TYPE_INT_ARGB if the file has alpha, else TYPE_INT_RGB)
+   * @throws IOException if the band can't be decoded
+   */
+  public BufferedImage readBand(int band) throws IOException
+  {
+    if (band < 0 || band >= getBandCount())
+      throw new IndexOutOfBoundsException("band " + band + " is not between 0 and " +
+                                          (getBandCount() - 1));
+    int inputRow = band * rowsPerBand;
+    ImageReadParam param = reader.getDefaultReadParam();
+    param.setSourceRegion(new Rectangle(0, inputRow, inputWidth,
+                                        Math.min(rowsPerBand, inputHeight - inputRow)));
+    param.setSourceSubsampling(subsamplingX, subsamplingY, 0, 0);
+    BufferedImage image = reader.read(0, param);
+    if (!PixelRaster.canWrap(image))
+      image = PixelRaster.toIntImage(image);
+    return image;
+  }
+
+}
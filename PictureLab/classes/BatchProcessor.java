@@ -0,0 +1,524 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Class that runs the same PicturePipeline steps on every picture in
+ * a directory without opening any windows.  It is meant to be run
+ * from the command line:
+ *
+ * <pre>
+ *   java BatchProcessor [-in dir] [-out dir] [-threads n] [-format ext] op ...
+ * </pre>
+ *
+ * The input directory defaults to the media directory and the output
+ * directory to a "processed" directory inside it.  Each op is a step
+ * name, with any numbers after a colon, for example
+ * <code>negate posterize:8 setBackground:0,0,255 mirrorVertical</code>.
+ * Steps that take a rectangle in PicturePipeline are done on the whole
+ * picture.
+ *
+ * Decoding, filtering, and encoding each have their own threads, and
+ * the pictures are passed between them through small queues, so a
+ * slow stage makes the ones before it wait instead of filling memory
+ * with decoded pictures.  At the end a line is printed for each file
+ * with how long each stage took.
+ */
+public class BatchProcessor
+{
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the file extensions that are processed */
+  private static final List<String> PICTURE_EXTENSIONS =
+    Arrays.asList("jpg", "jpeg", "png", "bmp", "gif", "tif", "tiff");
+
+  /** the job that tells a stage there are no more pictures */
+  private static final Job END = new Job(null);
+
+  /** the directory to read pictures from */
+  private File inputDirectory;
+
+  /** the directory to write pictures to */
+  private File outputDirectory;
+
+  /** the steps to do on each picture */
+  private List<Consumer<PicturePipeline>> steps = new ArrayList<Consumer<PicturePipeline>>();
+
+  /** the number of threads for each stage */
+  private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+  /** the extension for the written files (null to keep the input one) */
+  private String format;
+
+  ////////////////////// constructors /////////////////////////////////
+
+  /**
+   * A constructor that takes the input and output directories
+   * @param inputDirectory the directory to read pictures from
+   * @param outputDirectory the directory to write pictures to
+   */
+  public BatchProcessor(File inputDirectory, File outputDirectory)
+  {
+    this.inputDirectory = inputDirectory;
+    this.outputDirectory = outputDirectory;
+  }
+
+  ///////////////////////// methods //////////////////////////////
+
+  /**
+   * Method to set the number of threads used for each stage
+   * @param threads the number of threads (at least 1)
+   */
+  public void setThreads(int threads)
+  {
+    if (threads < 1)
+      throw new IllegalArgumentException("threads must be at least 1");
+    this.threads = threads;
+  }
+
+  /**
+   * Method to set the format to write the pictures in
+   * @param format the extension (jpg, png, etc) or null to keep the input one
+   */
+  public void setFormat(String format)
+  {
+    this.format = format;
+  }
+
+  /**
+   * Method to add a step to do on each picture
+   * @param step the code that adds to the pipeline
+   */
+  public void addStep(Consumer<PicturePipeline> step)
+  {
+    steps.add(step);
+  }
+
+  /**
+   * Method to add a step from its command line form, a PicturePipeline
+   * method name with any numbers after a colon (like posterize:8)
+   * @param operation the step
+   * @throws IllegalArgumentException if the step isn't known or has
+   * the wrong numbers
+   */
+  public void addStep(String operation)
+  {
+    steps.add(parseStep(operation));
+  }
+
+  /**
+   * Method to turn the command line form of a step into code that
+   * adds it to a pipeline
+   * @param operation the step, like negate or setBackground:0,0,255
+   * @return the code that adds the step
+   * @throws IllegalArgumentException if the step isn't known or has
+   * the wrong numbers
+   */
+  public static Consumer<PicturePipeline> parseStep(String operation)
+  {
+    int posColon = operation.indexOf(':');
+    String name = posColon < 0 ? operation : operation.substring(0, posColon);
+    int[] args = new int[0];
+    if (posColon >= 0)
+    {
+      String[] parts = operation.substring(posColon + 1).split(",");
+      args = new int[parts.length];
+      try {
+        for (int i = 0; i < parts.length; i++)
+          args[i] = Integer.parseInt(parts[i].trim());
+      } catch (NumberFormatException ex) {
+        throw new IllegalArgumentException("the numbers in " + operation + " aren't whole numbers");
+      }
+    }
+    int[] a = args;
+    switch (name)
+    {
+      case "zeroBlue":
+        checkArgs(operation, a, 0);
+        return pipeline -> pipeline.zeroBlue();
+      case "keepOnlyBlue":
+        checkArgs(operation, a, 0);
+        return pipeline -> pipeline.keepOnlyBlue(0, 0, height(pipeline), width(pipeline));
+      case "negate":
+        checkArgs(operation, a, 0);
+        return pipeline -> pipeline.negate(0, 0, height(pipeline), width(pipeline));
+      case "sepia":
+        checkArgs(operation, a, 0);
+        return pipeline -> pipeline.sepia(0, 0, height(pipeline), width(pipeline));
+      case "posterize":
+        checkArgs(operation, a, 1);
+        ChannelLookupTable.posterize(a[0]); // check the bins now
+        return pipeline -> pipeline.posterize(0, 0, height(pipeline), width(pipeline), a[0]);
+      case "posterizeCustomBinSize":
+        checkArgs(operation, a, 1);
+        return pipeline -> pipeline.posterizeCustomBinSize(0, 0, height(pipeline),
+                                                           width(pipeline), a[0]);
+      case "fixUnderwater":
+        checkArgs(operation, a, 0);
+        return pipeline -> pipeline.fixUnderwater();
+      case "setTransparency":
+        checkArgs(operation, a, 1);
+        return pipeline -> pipeline.setTransparency(a[0]);
+      case "setBackground":
+        checkArgs(operation, a, 3);
+        return pipeline -> pipeline.setBackground(a[0], a[1], a[2]);
+      case "mirrorVertical":
+        checkArgs(operation, a, 0);
+        return pipeline -> pipeline.mirrorVertical();
+      case "mirrorHorizontalOverPoint":
+        checkArgs(operation, a, 1);
+        return pipeline -> pipeline.mirrorHorizontalOverPoint(a[0]);
+      case "mirrorVerticalOverPoint":
+        checkArgs(operation, a, 1);
+        return pipeline -> pipeline.mirrorVerticalOverPoint(a[0]);
+      case "edgeDetection":
+        checkArgs(operation, a, 1);
+        return pipeline -> pipeline.edgeDetection(a[0]);
+      default:
+        throw new IllegalArgumentException("unknown step " + name);
+    }
+  }
+
+  /**
+   * Method to check that a step has the right number of numbers
+   * @param operation the step as typed
+   * @param args the numbers
+   * @param count the number of numbers the step needs
+   */
+  private static void checkArgs(String operation, int[] args, int count)
+  {
+    if (args.length != count)
+      throw new IllegalArgumentException(operation + " needs " + count + " number(s)");
+  }
+
+  /** Method to get the height of a pipeline's picture */
+  private static int height(PicturePipeline pipeline)
+  {
+    return pipeline.getPicture().getHeight();
+  }
+
+  /** Method to get the width of a pipeline's picture */
+  private static int width(PicturePipeline pipeline)
+  {
+    return pipeline.getPicture().getWidth();
+  }
+
+  /**
+   * Method to get the picture files in the input directory, sorted by name
+   * @return the files
+   */
+  public List<File> getInputFiles()
+  {
+    List<File> files = new ArrayList<File>();
+    File[] contents = inputDirectory.listFiles();
+    if (contents == null)
+      return files;
+    for (File file : contents)
+    {
+      String extension = getExtension(file.getName());
+      if (file.isFile() && PICTURE_EXTENSIONS.contains(extension))
+        files.add(file);
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  /**
+   * Method to get the lower case extension of a file name
+   * @param fileName the file name
+   * @return the part after the last dot or "" if there is none
+   */
+  private static String getExtension(String fileName)
+  {
+    int posDot = fileName.lastIndexOf('.');
+    return posDot < 0 ? "" : fileName.substring(posDot + 1).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Method to process every picture in the input directory.  A file
+   * that fails is reported in its result; the rest still run.
+   * @return a result for each file, in the order of the input files
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public List<Result> run() throws InterruptedException
+  {
+    if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+      throw new IllegalStateException("can't make the directory " + outputDirectory);
+
+    List<File> files = getInputFiles();
+    List<Result> results = new ArrayList<Result>();
+    BlockingQueue<Job> toDecode = new ArrayBlockingQueue<Job>(files.size() + 1);
+    BlockingQueue<Job> toFilter = new ArrayBlockingQueue<Job>(threads);
+    BlockingQueue<Job> toEncode = new ArrayBlockingQueue<Job>(threads);
+    for (File file : files)
+    {
+      Job job = new Job(file);
+      results.add(job.result);
+      toDecode.put(job);
+    }
+    toDecode.put(END);
+
+    List<Thread> workers = new ArrayList<Thread>();
+    startStage("decode", toDecode, toFilter, job -> decode(job), workers);
+    startStage("filter", toFilter, toEncode, job -> filter(job), workers);
+    startStage("encode", toEncode, null, job -> encode(job), workers);
+    for (Thread worker : workers)
+      worker.join();
+    return results;
+  }
+
+  /**
+   * Method to start the threads for one stage.  Each thread takes jobs
+   * from the input queue, works on them, and passes them on (waiting if
+   * the next queue is full).  Jobs that have failed are passed on
+   * without work.  When the last thread of the stage sees the end it
+   * passes the end on.
+   * @param name the name of the stage (for the thread names)
+   * @param input the queue to take jobs from
+   * @param output the queue to put jobs on (null for the last stage)
+   * @param work the work to do on each job
+   * @param workers the list to add the threads to
+   */
+  private void startStage(String name, BlockingQueue<Job> input, BlockingQueue<Job> output,
+                          Consumer<Job> work, List<Thread> workers)
+  {
+    AtomicInteger running = new AtomicInteger(threads);
+    for (int i = 0; i < threads; i++)
+    {
+      Thread worker = new Thread(() ->
+      {
+        try {
+          while (true)
+          {
+            Job job = input.take();
+            if (job == END)
+            {
+              // let the other threads of this stage see the end too
+              input.put(END);
+              if (running.decrementAndGet() == 0 && output != null)
+                output.put(END);
+              return;
+            }
+            if (job.result.error == null)
+            {
+              try {
+                work.accept(job);
+              } catch (Exception | OutOfMemoryError ex) {
+                job.result.error = ex;
+                job.picture = null;
+              }
+            }
+            if (output != null)
+              output.put(job);
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }, "BatchProcessor-" + name + "-" + i);
+      worker.start();
+      workers.add(worker);
+    }
+  }
+
+  /** Method to decode the picture for a job (each file is only used once, so skip the cache) */
+  private void decode(Job job)
+  {
+    long start = System.nanoTime();
+    Picture picture = new Picture(1, 1);
+    try {
+      picture.loadOrFail(job.result.file.getPath(), false);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    job.picture = picture;
+    job.result.decodeNanos = System.nanoTime() - start;
+  }
+
+  /** Method to do the steps on the picture for a job */
+  private void filter(Job job)
+  {
+    long start = System.nanoTime();
+    PicturePipeline pipeline = new PicturePipeline(job.picture);
+    for (Consumer<PicturePipeline> step : steps)
+      step.accept(pipeline);
+    pipeline.evaluate();
+    job.result.filterNanos = System.nanoTime() - start;
+  }
+
+  /** Method to encode the picture for a job */
+  private void encode(Job job)
+  {
+    long start = System.nanoTime();
+    String name = job.result.file.getName();
+    if (format != null)
+    {
+      int posDot = name.lastIndexOf('.');
+      name = (posDot < 0 ? name : name.substring(0, posDot)) + "." + format;
+    }
+    job.result.outputFile = new File(outputDirectory, name);
+    try {
+      job.picture.writeOrFail(job.result.outputFile.getPath());
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    job.picture = null;
+    job.result.encodeNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Method to print a line for each file and a total
+   * @param results the results from run
+   * @param wallNanos the time the whole run took
+   */
+  public static void printSummary(List<Result> results, long wallNanos)
+  {
+    int failed = 0;
+    for (Result result : results)
+    {
+      System.out.println(result);
+      if (result.error != null)
+        failed++;
+    }
+    System.out.println(String.format(Locale.ROOT, "%d files, %d failed, %.1f s",
+                                     results.size(), failed, wallNanos / 1e9));
+  }
+
+  /**
+   * Main method for running from the command line
+   * @param args the options and steps (see the class comment)
+   */
+  public static void main(String[] args) throws InterruptedException
+  {
+    if (System.getProperty("java.awt.headless") == null)
+      System.setProperty("java.awt.headless", "true");
+
+    File inputDirectory = new File(FileChooser.getMediaDirectory());
+    File outputDirectory = null;
+    int threads = 0;
+    String format = null;
+    List<String> operations = new ArrayList<String>();
+    try {
+      for (int i = 0; i < args.length; i++)
+      {
+        if (args[i].equals("-in"))
+          inputDirectory = new File(args[++i]);
+        else if (args[i].equals("-out"))
+          outputDirectory = new File(args[++i]);
+        else if (args[i].equals("-threads"))
+          threads = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-format"))
+          format = args[++i];
+        else
+          operations.add(args[i]);
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+      operations.clear();
+    }
+    if (operations.isEmpty())
+    {
+      System.out.println("usage: java BatchProcessor [-in dir] [-out dir] [-threads n] " +
+                         "[-format ext] op[:n,n,...] ...");
+      System.exit(2);
+    }
+    if (outputDirectory == null)
+      outputDirectory = new File(inputDirectory, "processed");
+
+    BatchProcessor processor = new BatchProcessor(inputDirectory, outputDirectory);
+    try {
+      if (threads > 0)
+        processor.setThreads(threads);
+      processor.setFormat(format);
+      for (String operation : operations)
+        processor.addStep(operation);
+    } catch (IllegalArgumentException ex) {
+      System.out.println(ex.getMessage());
+      System.exit(2);
+    }
+
+    long start = System.nanoTime();
+    List<Result> results = processor.run();
+    printSummary(results, System.nanoTime() - start);
+    for (Result result : results)
+      if (result.error != null)
+        System.exit(1);
+  }
+
+  /**
+   * Class for what happened to one file
+   */
+  public static class Result
+  {
+    /** the file that was read */
+    private File file;
+
+    /** the file that was written (null if it wasn't) */
+    private File outputFile;
+
+    /** the time each stage took */
+    private long decodeNanos;
+    private long filterNanos;
+    private long encodeNanos;
+
+    /** what went wrong (null if nothing did) */
+    private Throwable error;
+
+    /** Constructor that takes the file to read */
+    Result(File file)
+    {
+      this.file = file;
+    }
+
+    /** @return the file that was read */
+    public File getFile() { return file; }
+
+    /** @return the file that was written (null if it wasn't) */
+    public File getOutputFile() { return outputFile; }
+
+    /** @return the time it took to decode the file in nanoseconds */
+    public long getDecodeNanos() { return decodeNanos; }
+
+    /** @return the time the steps took in nanoseconds */
+    public long getFilterNanos() { return filterNanos; }
+
+    /** @return the time it took to encode the file in nanoseconds */
+    public long getEncodeNanos() { return encodeNanos; }
+
+    /** @return what went wrong or null if nothing did */
+    public Throwable getError() { return error; }
+
+    /** @return a line with the file name and times, or the error */
+    public String toString()
+    {
+      if (error != null)
+        return file.getName() + " FAILED: " + error;
+      return String.format(Locale.ROOT, "%-30s decode %7.1f ms  filter %7.1f ms  encode %7.1f ms",
+                           file.getName(), decodeNanos / 1e6, filterNanos / 1e6,
+                           encodeNanos / 1e6);
+    }
+  }
+
+  /**
+   * Class for one file on its way through the stages
+   */
+  private static class Job
+  {
+    private Result result;
+    private Picture picture;
+
+    Job(File file)
+    {
+      this.result = new Result(file);
+    }
+  }
+
+}
@@ -0,0 +1,288 @@
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Class that holds a table for each of the alpha, red, green, and blue
+ * channels saying what each value from 0 to 255 should turn into.  Any
+ * change where a channel's new value only depends on its old value
+ * (negate, zeroing a channel, scaling a channel, posterizing, setting
+ * the alpha) can be made into a table once and then done with four
+ * array lookups per pixel.  Tables can be chained with andThen, and
+ * the chain still takes only one pass over the picture.
+ *
+ * A table is also an IntUnaryOperator on packed pixel values (alpha,
+ * red, green, blue), so it can be passed to Pixel.transform.
+ */
+public class ChannelLookupTable implements IntUnaryOperator
+{
+
+  ////////////////////////// fields ///////////////////////////////////
+
+  /** the new alpha for each old alpha */
+  private byte[] alpha;
+
+  /** the new red for each old red */
+  private byte[] red;
+
+  /** the new green for each old green */
+  private byte[] green;
+
+  /** the new blue for each old blue */
+  private byte[] blue;
+
+  ////////////////////// constructors /////////////////////////////////
+
+  /**
+   * A constructor that takes the four tables
+   * @param alpha the table for alpha
+   * @param red the table for red
+   * @param green the table for green
+   * @param blue the table for blue
+   */
+  private ChannelLookupTable(byte[] alpha, byte[] red, byte[] green, byte[] blue)
+  {
+    this.alpha = alpha;
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+  }
+
+  ///////////////////////// methods //////////////////////////////
+
+  /**
+   * Method to get a table that doesn't change anything
+   * @return the identity table
+   */
+  public static ChannelLookupTable identity()
+  {
+    byte[] table = makeTable(null);
+    return new ChannelLookupTable(table,table,table,table);
+  }
+
+  /**
+   * Method to get a table that uses the same function for red, green,
+   * and blue and leaves the alpha alone
+   * @param function the new value for each old value (corrected to 0-255)
+   * @return the table
+   */
+  public static ChannelLookupTable forColors(IntUnaryOperator function)
+  {
+    byte[] table = makeTable(function);
+    return new ChannelLookupTable(makeTable(null),table,table,table);
+  }
+
+  /**
+   * Method to get a table with a function for each channel
+   * @param alphaFunction the function for alpha (null to leave it alone)
+   * @param redFunction the function for red (null to leave it alone)
+   * @param greenFunction the function for green (null to leave it alone)
+   * @param blueFunction the function for blue (null to leave it alone)
+   * @return the table
+   */
+  public static ChannelLookupTable forChannels(IntUnaryOperator alphaFunction,
+                                               IntUnaryOperator redFunction,
+                                               IntUnaryOperator greenFunction,
+                                               IntUnaryOperator blueFunction)
+  {
+    return new ChannelLookupTable(makeTable(alphaFunction),makeTable(redFunction),
+                                  makeTable(greenFunction),makeTable(blueFunction));
+  }
+
+  /**
+   * Method to get a table that sets each color value x to 255 - x
+   * @return the negate table
+   */
+  public static ChannelLookupTable negate()
+  {
+    return forColors(value -> 255 - value);
+  }
+
+  /**
+   * Method to get a table that multiplies each channel by a factor.
+   * Results over 255 become 255.
+   * @param redFactor the amount to multiply red by
+   * @param greenFactor the amount to multiply green by
+   * @param blueFactor the amount to multiply blue by
+   * @return the scaling table
+   */
+  public static ChannelLookupTable scale(double redFactor, double greenFactor,
+                                         double blueFactor)
+  {
+    return forChannels(null,
+                       value -> (int) (value * redFactor),
+                       value -> (int) (value * greenFactor),
+                       value -> (int) (value * blueFactor));
+  }
+
+  /**
+   * Method to get a table that posterizes the colors.  The values 0 to
+   * 255 are split into bins of (nearly) the same size and each value
+   * becomes the middle of its bin.  256 bins leaves the colors alone.
+   * @param bins the number of bins (1 to 256)
+   * @return the posterize table
+   * @throws IllegalArgumentException if bins is outside 1 to 256
+   */
+  public static ChannelLookupTable posterize(int bins)
+  {
+    if (bins < 1 || bins > 256)
+      throw new IllegalArgumentException("bins must be from 1 to 256 but was " + bins);
+    
+    return forColors(value -> 
+    {
+      // the bin this value is in and the first and last values in it
+      int bin = value * bins / 256;
+      int lowest = (bin * 256 + bins - 1) / bins;
+      int highest = ((bin + 1) * 256 + bins - 1) / bins - 1;
+      return (lowest + highest) / 2;
+    });
+  }
+  
+  /**
+   * Method to get the table that gives the same result as the bin by
+   * bin passes Picture.posterizeCustomBinSize used to make.  The bins 
+   * are 255 / amountOfBins wide and a value strictly inside a bin
+   * becomes the middle of it.  Values on a bin boundary or past the
+   * last bin are left alone.
+   * @param amountOfBins the number of bins
+   * @return the table
+   */
+  public static ChannelLookupTable posterizeCustomBinSize(int amountOfBins)
+  {
+    int binSize = 255/amountOfBins;
+    
+    return forColors(value ->
+    {
+      // a value lands in at most one bin and stays there once moved
+      for (int binNumber = 1; binNumber <= amountOfBins; binNumber++)
+      {
+        int lowerBinBound = binSize*(binNumber-1);
+        int higherBinBound = binSize*binNumber;
+        if (value < higherBinBound && value > lowerBinBound)
+          return (higherBinBound + lowerBinBound)/2;
+      }
+      return value;
+    });
+  }
+  
+  /**
+   * Method to get a table that sets the alpha of every pixel
+   * @param alphaLevel the new alpha (corrected to 0-255)
+   * @return the table
+   */
+  public static ChannelLookupTable setAlpha(int alphaLevel)
+  {
+    return forChannels(value -> alphaLevel, null, null, null);
+  }
+
+  /**
+   * Method to make one channel's table from a function.  The
+   * results are corrected to be within 0 to 255.
+   * @param function the new value for each old value (null for the same)
+   * @return the 256 entry table
+   */
+  private static byte[] makeTable(IntUnaryOperator function)
+  {
+    byte[] table = new byte[256];
+    for (int value = 0; value < 256; value++)
+    {
+      int result = value;
+      if (function != null)
+        result = Math.max(0, Math.min(255, function.applyAsInt(value)));
+      table[value] = (byte) result;
+    }
+    return table;
+  }
+
+  /**
+   * Method to get a table that does this table and then the passed one
+   * @param next the table to use on the results of this one
+   * @return the combined table
+   */
+  public ChannelLookupTable andThen(ChannelLookupTable next)
+  {
+    return new ChannelLookupTable(combine(alpha,next.alpha),combine(red,next.red),
+                                  combine(green,next.green),combine(blue,next.blue));
+  }
+
+  /**
+   * Method to combine two tables for one channel
+   * @param first the table to use first
+   * @param second the table to use on the results of the first
+   * @return the combined table
+   */
+  private static byte[] combine(byte[] first, byte[] second)
+  {
+    byte[] table = new byte[256];
+    for (int value = 0; value < 256; value++)
+      table[value] = second[first[value] & 0xff];
+    return table;
+  }
+
+  /**
+   * Method to look up the new alpha for an old one
+   * @param value the old alpha (0-255)
+   * @return the new alpha
+   */
+  public int lookupAlpha(int value) { return alpha[value] & 0xff; }
+
+  /**
+   * Method to look up the new red for an old one
+   * @param value the old red (0-255)
+   * @return the new red
+   */
+  public int lookupRed(int value) { return red[value] & 0xff; }
+
+  /**
+   * Method to look up the new green for an old one
+   * @param value the old green (0-255)
+   * @return the new green
+   */
+  public int lookupGreen(int value) { return green[value] & 0xff; }
+
+  /**
+   * Method to look up the new blue for an old one
+   * @param value the old blue (0-255)
+   * @return the new blue
+   */
+  public int lookupBlue(int value) { return blue[value] & 0xff; }
+
+  /**
+   * Method to change a run of packed pixel values in an array in place.
+   * This is the same as calling applyAsInt on each one, but keeps the
+   * loop here where the tables are known.
+   * @param data the array of packed pixel values
+   * @param start the index of the first value to change
+   * @param end the index to stop before
+   * @param alphaBits bits to OR into each value before the lookup
+   * (0xff000000 for a raster without alpha, else 0)
+   */
+  public void applyTo(int[] data, int start, int end, int alphaBits)
+  {
+    byte[] alpha = this.alpha;
+    byte[] red = this.red;
+    byte[] green = this.green;
+    byte[] blue = this.blue;
+    for (int index = start; index < end; index++)
+    {
+      int value = data[index] | alphaBits;
+      data[index] = ((alpha[value >>> 24] & 0xff) << 24) |
+        ((red[(value >> 16) & 0xff] & 0xff) << 16) |
+        ((green[(value >> 8) & 0xff] & 0xff) << 8) |
+        (blue[value & 0xff] & 0xff);
+    }
+  }
+  
+  /**
+   * Method to change a packed pixel value (alpha, red, green, blue)
+   * using the tables
+   * @param value the old pixel value
+   * @return the new pixel value
+   */
+  public int applyAsInt(int value)
+  {
+    return ((alpha[value >>> 24] & 0xff) << 24) |
+      ((red[(value >> 16) & 0xff] & 0xff) << 16) |
+      ((green[(value >> 8) & 0xff] & 0xff) << 8) |
+      (blue[value & 0xff] & 0xff);
+  }
+
+}
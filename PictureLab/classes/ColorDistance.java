@@ -0,0 +1,190 @@
+/**
+ * Class with ways to measure how far apart two colors are, working
+ * straight on packed pixel values (alpha, red, green, blue) like the
+ * ones in a PixelRaster.  No Color objects are made and no square
+ * roots are taken, so they are cheap enough to use on every pixel.
+ * The alpha is ignored.
+ *
+ * To test a distance against a limit without a square root, square
+ * the limit once (squaredThreshold does this) and compare it with the
+ * squared distance.
+ */
+public class ColorDistance
+{
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the number of steps in the cube root table for CIE76 */
+  private static final int LAB_STEPS = 4096;
+
+  /** each channel value (0-255) changed back to linear light (0-1) */
+  private static final float[] LINEAR = new float[256];
+
+  /** the Lab f function at each step from 0 to 1 */
+  private static final float[] LAB_F = new float[LAB_STEPS + 2];
+
+  static
+  {
+    for (int value = 0; value < 256; value++)
+    {
+      double c = value / 255.0;
+      LINEAR[value] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+    }
+    for (int step = 0; step < LAB_F.length; step++)
+    {
+      double t = (double) step / LAB_STEPS;
+      LAB_F[step] = (float) (t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116);
+    }
+  }
+
+  ////////////////////////// Methods //////////////////////////////////
+
+  /**
+   * Method to get the square of the straight line distance between two
+   * colors, the same as Pixel.colorDistance squared
+   * @param value1 a packed pixel value
+   * @param value2 another packed pixel value
+   * @return the squared distance (0 to 195075)
+   */
+  public static int squared(int value1, int value2)
+  {
+    int red = ((value1 >> 16) & 0xff) - ((value2 >> 16) & 0xff);
+    int green = ((value1 >> 8) & 0xff) - ((value2 >> 8) & 0xff);
+    int blue = (value1 & 0xff) - (value2 & 0xff);
+    return red * red + green * green + blue * blue;
+  }
+
+  /**
+   * Method to get the sum of the differences of the red, green, and blue
+   * @param value1 a packed pixel value
+   * @param value2 another packed pixel value
+   * @return the distance (0 to 765)
+   */
+  public static int manhattan(int value1, int value2)
+  {
+    return Math.abs(((value1 >> 16) & 0xff) - ((value2 >> 16) & 0xff)) +
+      Math.abs(((value1 >> 8) & 0xff) - ((value2 >> 8) & 0xff)) +
+      Math.abs((value1 & 0xff) - (value2 & 0xff));
+  }
+
+  /**
+   * Method to get the biggest difference of the red, green, or blue
+   * @param value1 a packed pixel value
+   * @param value2 another packed pixel value
+   * @return the distance (0 to 255)
+   */
+  public static int maxChannel(int value1, int value2)
+  {
+    return Math.max(Math.abs(((value1 >> 16) & 0xff) - ((value2 >> 16) & 0xff)),
+                    Math.max(Math.abs(((value1 >> 8) & 0xff) - ((value2 >> 8) & 0xff)),
+                             Math.abs((value1 & 0xff) - (value2 & 0xff))));
+  }
+
+  /**
+   * Method to get a squared distance that is closer to how different
+   * people see the colors.  Green counts the most, and red and blue
+   * count more or less depending on how red the two colors are (the
+   * "redmean" weighting).
+   * @param value1 a packed pixel value
+   * @param value2 another packed pixel value
+   * @return the weighted squared distance (0 to 584970)
+   */
+  public static int weightedSquared(int value1, int value2)
+  {
+    int red1 = (value1 >> 16) & 0xff;
+    int red2 = (value2 >> 16) & 0xff;
+    int redMean = (red1 + red2) >> 1;
+    int red = red1 - red2;
+    int green = ((value1 >> 8) & 0xff) - ((value2 >> 8) & 0xff);
+    int blue = (value1 & 0xff) - (value2 & 0xff);
+    return (((512 + redMean) * red * red) >> 8) + 4 * green * green +
+      (((767 - redMean) * blue * blue) >> 8);
+  }
+
+  /**
+   * Method to get the square of the CIE76 color difference (the
+   * straight line distance in CIE Lab).  A difference of about 2.3 is
+   * just noticeable.  Tables are used for the gamma and the cube roots.
+   * @param value1 a packed pixel value
+   * @param value2 another packed pixel value
+   * @return the squared difference (0 to about 30000)
+   */
+  public static float cie76Squared(int value1, int value2)
+  {
+    float fx1 = labF(x(value1));
+    float fy1 = labF(y(value1));
+    float fz1 = labF(z(value1));
+    float fx2 = labF(x(value2));
+    float fy2 = labF(y(value2));
+    float fz2 = labF(z(value2));
+    float l = 116 * (fy1 - fy2);
+    float a = 500 * ((fx1 - fy1) - (fx2 - fy2));
+    float b = 200 * ((fy1 - fz1) - (fy2 - fz2));
+    return l * l + a * a + b * b;
+  }
+
+  /**
+   * Method to change a packed pixel value to CIE Lab (D65 white)
+   * @param value the packed pixel value
+   * @param lab the array to put L, a, and b in
+   */
+  public static void toLab(int value, float[] lab)
+  {
+    float fx = labF(x(value));
+    float fy = labF(y(value));
+    float fz = labF(z(value));
+    lab[0] = 116 * fy - 16;
+    lab[1] = 500 * (fx - fy);
+    lab[2] = 200 * (fy - fz);
+  }
+
+  /** Method to get the CIE X of a packed pixel value divided by the white X */
+  private static float x(int value)
+  {
+    return (0.4124f * LINEAR[(value >> 16) & 0xff] + 0.3576f * LINEAR[(value >> 8) & 0xff] +
+            0.1805f * LINEAR[value & 0xff]) / 0.95047f;
+  }
+
+  /** Method to get the CIE Y of a packed pixel value */
+  private static float y(int value)
+  {
+    return 0.2126f * LINEAR[(value >> 16) & 0xff] + 0.7152f * LINEAR[(value >> 8) & 0xff] +
+      0.0722f * LINEAR[value & 0xff];
+  }
+
+  /** Method to get the CIE Z of a packed pixel value divided by the white Z */
+  private static float z(int value)
+  {
+    return (0.0193f * LINEAR[(value >> 16) & 0xff] + 0.1192f * LINEAR[(value >> 8) & 0xff] +
+            0.9505f * LINEAR[value & 0xff]) / 1.08883f;
+  }
+
+  /**
+   * Method to look up the Lab f function, between the table steps
+   * @param t a value from 0 to 1
+   * @return f(t)
+   */
+  private static float labF(float t)
+  {
+    float position = Math.max(0, Math.min(1, t)) * LAB_STEPS;
+    int step = (int) position;
+    float fraction = position - step;
+    return LAB_F[step] + fraction * (LAB_F[step + 1] - LAB_F[step]);
+  }
+
+  /**
+   * Method to get the limit to compare squared with, so that
+   * squared(value1, value2) > squaredThreshold(distance) is true exactly
+   * when the straight line distance is more than distance
+   * @param distance the distance
+   * @return the limit for the squared distance
+   */
+  public static int squaredThreshold(double distance)
+  {
+    if (distance < 0)
+      return -1;
+    double square = distance * distance;
+    return square >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.floor(square);
+  }
+
+}
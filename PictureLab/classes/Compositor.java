@@ -0,0 +1,293 @@
+import java.awt.Rectangle;
+
+/**
+ * Class that lays one picture over another using its alpha
+ * (transparency), for overlays and watermarks.  How the two are put
+ * together is set by a Porter-Duff rule (which parts of each picture
+ * are kept) and a blend mode (how the colors mix where both are kept).
+ *
+ * The math is done on packed pixels with whole numbers: each color is
+ * multiplied by its alpha (premultiplied) and the Porter-Duff factor,
+ * the two are added, and the alpha is divided back out, keeping 16 bits
+ * until the end so mostly clear results still get the right color.  A
+ * picture without alpha counts as fully opaque.  Rows are done at the
+ * same time on the TileExecutor pool.
+ *
+ * If the target doesn't use alpha, a result that isn't fully opaque is
+ * stored as if it was laid over black.
+ */
+public class Compositor
+{
+
+  /** factor code: keep none */
+  private static final int ZERO = 0;
+  /** factor code: keep all */
+  private static final int ONE = 1;
+  /** factor code: keep as much as the other picture's alpha */
+  private static final int ALPHA = 2;
+  /** factor code: keep as much as the other picture isn't there */
+  private static final int ONE_MINUS_ALPHA = 3;
+
+  /**
+   * The Porter-Duff rules for which parts of the source (the picture
+   * laid on top) and the destination (the picture underneath) are kept
+   */
+  public enum Rule
+  {
+    /** keep neither */
+    CLEAR(ZERO, ZERO),
+    /** keep only the source */
+    SRC(ONE, ZERO),
+    /** keep only the destination */
+    DST(ZERO, ONE),
+    /** the source over the destination (the usual way) */
+    SRC_OVER(ONE, ONE_MINUS_ALPHA),
+    /** the destination over the source */
+    DST_OVER(ONE_MINUS_ALPHA, ONE),
+    /** the source only where the destination is */
+    SRC_IN(ALPHA, ZERO),
+    /** the destination only where the source is */
+    DST_IN(ZERO, ALPHA),
+    /** the source only where the destination isn't */
+    SRC_OUT(ONE_MINUS_ALPHA, ZERO),
+    /** the destination only where the source isn't */
+    DST_OUT(ZERO, ONE_MINUS_ALPHA),
+    /** the source over the destination but only where the destination is */
+    SRC_ATOP(ALPHA, ONE_MINUS_ALPHA),
+    /** the destination over the source but only where the source is */
+    DST_ATOP(ONE_MINUS_ALPHA, ALPHA),
+    /** each only where the other isn't */
+    XOR(ONE_MINUS_ALPHA, ONE_MINUS_ALPHA);
+
+    /** how much of the source is kept (one of the factor codes) */
+    private int sourceCode;
+    /** how much of the destination is kept (one of the factor codes) */
+    private int destinationCode;
+
+    Rule(int sourceCode, int destinationCode)
+    {
+      this.sourceCode = sourceCode;
+      this.destinationCode = destinationCode;
+    }
+
+    /**
+     * Method to get how much of the source is kept
+     * @param destinationAlpha the destination alpha (0-255)
+     * @return the amount (0-255)
+     */
+    int sourceFactor(int destinationAlpha)
+    {
+      return factor(sourceCode, destinationAlpha);
+    }
+
+    /**
+     * Method to get how much of the destination is kept
+     * @param sourceAlpha the source alpha (0-255)
+     * @return the amount (0-255)
+     */
+    int destinationFactor(int sourceAlpha)
+    {
+      return factor(destinationCode, sourceAlpha);
+    }
+
+    /**
+     * Method to work out a factor code
+     * @param code the factor code
+     * @param otherAlpha the alpha of the other picture (0-255)
+     * @return the amount (0-255)
+     */
+    private static int factor(int code, int otherAlpha)
+    {
+      switch (code)
+      {
+        case ONE:
+          return 255;
+        case ALPHA:
+          return otherAlpha;
+        case ONE_MINUS_ALPHA:
+          return 255 - otherAlpha;
+        default:
+          return 0;
+      }
+    }
+  }
+
+  /**
+   * The ways to mix the source color with the destination color where
+   * both are kept
+   */
+  public enum BlendMode
+  {
+    /** just use the source color */
+    NORMAL,
+    /** multiply the colors (always darker) */
+    MULTIPLY,
+    /** multiply the opposites of the colors (always lighter) */
+    SCREEN,
+    /** multiply dark parts and screen light parts of the destination */
+    OVERLAY,
+    /** add the colors, stopping at 255 */
+    ADD;
+
+    /**
+     * Method to mix one channel of the destination and source colors
+     * @param destination the destination channel (0-255)
+     * @param source the source channel (0-255)
+     * @return the mixed channel (0-255)
+     */
+    int blend(int destination, int source)
+    {
+      switch (this)
+      {
+        case MULTIPLY:
+          return div255(destination * source);
+        case SCREEN:
+          return destination + source - div255(destination * source);
+        case OVERLAY:
+          if (destination < 128)
+            return div255(2 * destination * source);
+          return 255 - div255(2 * (255 - destination) * (255 - source));
+        case ADD:
+          return Math.min(255, destination + source);
+        default:
+          return source;
+      }
+    }
+  }
+
+  ////////////////////////// Methods //////////////////////////////////
+
+  /**
+   * Method to divide by 255 with rounding, exact for 0 to 255 * 255
+   * @param value the value to divide
+   * @return the value divided by 255
+   */
+  static int div255(int value)
+  {
+    value += 128;
+    return (value + (value >> 8)) >> 8;
+  }
+
+  /**
+   * Method to lay a rectangle of one picture over another
+   * @param source the picture to lay on top
+   * @param sourceX the left x of the rectangle in the source
+   * @param sourceY the top y of the rectangle in the source
+   * @param width the width of the rectangle
+   * @param height the height of the rectangle
+   * @param target the picture underneath, which is changed
+   * @param targetX the x to put the left of the rectangle at
+   * @param targetY the y to put the top of the rectangle at
+   * @param rule which parts of each picture are kept
+   * @param mode how the colors mix
+   * @param opacity how much of the source to use (0-255, 255 for all)
+   */
+  public static void composite(SimplePicture source, int sourceX, int sourceY,
+                               int width, int height,
+                               SimplePicture target, int targetX, int targetY,
+                               Rule rule, BlendMode mode, int opacity)
+  {
+    if (opacity < 0 || opacity > 255)
+      throw new IllegalArgumentException("the opacity must be from 0 to 255");
+    PixelRaster from = source.getRaster();
+    PixelRaster to = target.getRaster();
+    Rectangle area = Blitter.clip(from, sourceX, sourceY, width, height, to, targetX, targetY);
+    if (area.isEmpty())
+      return;
+    int shiftX = targetX - sourceX;
+    int shiftY = targetY - sourceY;
+
+    // work from a copy of the source if it is the same pixels as the target
+    int[] fromData = from.getData();
+    int fromOffset = from.getIndex(area.x, area.y);
+    int fromStride = from.getScanlineStride();
+    if (fromData == to.getData())
+    {
+      int[] copy = new int[area.width * area.height];
+      for (int row = 0; row < area.height; row++)
+        System.arraycopy(fromData, fromOffset + row * fromStride, copy, row * area.width,
+                         area.width);
+      fromData = copy;
+      fromOffset = 0;
+      fromStride = area.width;
+    }
+    int[] sourceData = fromData;
+    int sourceStart = fromOffset;
+    int sourceStride = fromStride;
+    int sourceAlphaBits = from.hasAlpha() ? 0 : 0xff000000;
+
+    int[] toData = to.getData();
+    boolean targetAlpha = to.hasAlpha();
+    int startX = area.x + shiftX;
+    TileExecutor.executeRows(area.y + shiftY, startX, area.y + shiftY + area.height,
+                             startX + area.width, (startRow, startCol, endRow, endCol) ->
+    {
+      for (int row = startRow; row < endRow; row++)
+      {
+        int fromIndex = sourceStart + (row - shiftY - area.y) * sourceStride;
+        int toIndex = to.getIndex(startX, row);
+        for (int col = 0; col < area.width; col++)
+        {
+          int value = sourceData[fromIndex + col] | sourceAlphaBits;
+          int under = toData[toIndex + col];
+          if (!targetAlpha)
+            under |= 0xff000000;
+          toData[toIndex + col] = compositePixel(value, under, rule, mode, opacity, targetAlpha);
+        }
+      }
+    });
+  }
+
+  /**
+   * Method to put one source pixel together with one destination pixel
+   * @param value the source pixel (packed with alpha)
+   * @param under the destination pixel (packed with alpha)
+   * @param rule which parts of each are kept
+   * @param mode how the colors mix
+   * @param opacity how much of the source to use (0-255)
+   * @param keepAlpha true to store the result alpha, false to store
+   * the result as if over black and fully opaque
+   * @return the new destination pixel
+   */
+  static int compositePixel(int value, int under, Rule rule, BlendMode mode, int opacity,
+                            boolean keepAlpha)
+  {
+    int sourceAlpha = div255((value >>> 24) * opacity);
+    int destinationAlpha = under >>> 24;
+
+    // the usual case has quick answers when the source is clear or solid
+    if (rule == Rule.SRC_OVER && mode == BlendMode.NORMAL)
+    {
+      if (sourceAlpha == 0)
+        return under;
+      if (sourceAlpha == 255)
+        return value | 0xff000000;
+    }
+
+    // each color is weighted by its alpha times its factor (premultiplied
+    // and kept to 16 bits) and the sum is divided by the total weight
+    int sourceWeight = sourceAlpha * rule.sourceFactor(destinationAlpha);
+    int destinationWeight = destinationAlpha * rule.destinationFactor(sourceAlpha);
+    int totalWeight = sourceWeight + destinationWeight;
+    int result = keepAlpha ? div255(totalWeight) << 24 : 0xff000000;
+    if (totalWeight == 0)
+      return result;
+    int divisor = keepAlpha ? totalWeight : 255 * 255;
+    for (int shift = 16; shift >= 0; shift -= 8)
+    {
+      int sourceColor = (value >> shift) & 0xff;
+      int destinationColor = (under >> shift) & 0xff;
+
+      // mix the source with the destination where the destination is there
+      if (mode != BlendMode.NORMAL)
+        sourceColor = div255((255 - destinationAlpha) * sourceColor +
+                             destinationAlpha * mode.blend(destinationColor, sourceColor));
+
+      int color = (sourceColor * sourceWeight + destinationColor * destinationWeight +
+                   divisor / 2) / divisor;
+      result |= color << shift;
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,358 @@
+/**
+ * Class that does convolutions (blurs, sharpening, edge finding) on
+ * the packed pixels of a picture.  The picture is done in tiles at the
+ * same time on the TileExecutor pool.  Each tile first copies the
+ * pixels it needs, including the border around it, into a small array
+ * so the sums never have to check for the edge of the picture.  A
+ * kernel that is a column times a row is done in two passes, across
+ * and then down, with whole number sums.
+ *
+ * The alpha of each pixel is kept as it was; only red, green, and
+ * blue are convolved.
+ */
+public class Convolution
+{
+
+  /**
+   * What to use for the pixels past the edge of the picture
+   */
+  public enum BorderMode
+  {
+    /** use the nearest edge pixel */
+    CLAMP,
+    /** mirror the picture at the edge (without repeating the edge pixel) */
+    REFLECT,
+    /** wrap around to the other side */
+    WRAP,
+    /** use black */
+    ZERO
+  }
+
+  ////////////////////////// Methods //////////////////////////////////
+
+  /**
+   * Method to convolve a whole picture with a kernel
+   * @param picture the picture to change
+   * @param kernel the kernel to use
+   * @param mode what to use past the edges
+   */
+  public static void convolve(SimplePicture picture, ConvolutionKernel kernel, BorderMode mode)
+  {
+    PixelRaster raster = picture.getRaster();
+    int width = raster.getWidth();
+    int height = raster.getHeight();
+    int[] source = copyPixels(raster);
+    int[] data = raster.getData();
+    int alphaBits = raster.hasAlpha() ? 0 : 0xff000000;
+
+    TileExecutor.execute(0, 0, height, width,
+                         (startRow, startCol, endRow, endCol) ->
+    {
+      int[] padded = pad(source, width, height, startRow, startCol, endRow, endCol,
+                         kernel.getWidth() / 2, kernel.getHeight() / 2, mode);
+      if (kernel.isSeparable())
+        convolveSeparable(padded, kernel, raster, data, source, alphaBits,
+                          startRow, startCol, endRow, endCol);
+      else
+        convolveGrid(padded, kernel, raster, data, source, alphaBits,
+                     startRow, startCol, endRow, endCol);
+    });
+  }
+
+  /**
+   * Method to turn a picture into a map of how fast the brightness
+   * changes at each pixel: gray, brighter where the edges are.  The
+   * brightness is convolved with the two kernels and the answer is
+   * the length of the two results divided by the scale.
+   * @param picture the picture to change
+   * @param xKernel the kernel for changes from left to right
+   * @param yKernel the kernel for changes from top to bottom
+   * @param scale the amount to divide the length by (4 for Sobel,
+   * 16 for Scharr keeps the answer from 0 to about 255)
+   * @param mode what to use past the edges
+   */
+  public static void gradient(SimplePicture picture, ConvolutionKernel xKernel,
+                              ConvolutionKernel yKernel, int scale, BorderMode mode)
+  {
+    if (xKernel.getWidth() != yKernel.getWidth() || xKernel.getHeight() != yKernel.getHeight())
+      throw new IllegalArgumentException("the two kernels must be the same size");
+    PixelRaster raster = picture.getRaster();
+    int width = raster.getWidth();
+    int height = raster.getHeight();
+    int[] source = copyPixels(raster);
+    int[] data = raster.getData();
+    int alphaBits = raster.hasAlpha() ? 0 : 0xff000000;
+    int kernelWidth = xKernel.getWidth();
+    int kernelHeight = xKernel.getHeight();
+    int[] xWeights = xKernel.weights();
+    int[] yWeights = yKernel.weights();
+
+    TileExecutor.execute(0, 0, height, width,
+                         (startRow, startCol, endRow, endCol) ->
+    {
+      int[] padded = pad(source, width, height, startRow, startCol, endRow, endCol,
+                         kernelWidth / 2, kernelHeight / 2, mode);
+
+      // change the pixels to brightness once instead of once per weight
+      for (int i = 0; i < padded.length; i++)
+      {
+        int value = padded[i];
+        padded[i] = (77 * ((value >> 16) & 0xff) + 150 * ((value >> 8) & 0xff) +
+                     29 * (value & 0xff)) >> 8;
+      }
+
+      int paddedWidth = endCol - startCol + kernelWidth - 1;
+      for (int row = startRow; row < endRow; row++)
+      {
+        int outIndex = raster.getIndex(startCol, row);
+        int sourceIndex = row * width + startCol;
+        for (int col = startCol; col < endCol; col++)
+        {
+          int gx = 0;
+          int gy = 0;
+          int weightIndex = 0;
+          for (int ky = 0; ky < kernelHeight; ky++)
+          {
+            int paddedIndex = (row - startRow + ky) * paddedWidth + (col - startCol);
+            for (int kx = 0; kx < kernelWidth; kx++)
+            {
+              int value = padded[paddedIndex + kx];
+              gx += xWeights[weightIndex] * value;
+              gy += yWeights[weightIndex] * value;
+              weightIndex++;
+            }
+          }
+          int level = (int) (Math.sqrt((double) gx * gx + (double) gy * gy) / scale);
+          level = Math.min(255, level);
+          int alpha = (source[sourceIndex++] | alphaBits) & 0xff000000;
+          data[outIndex++] = alpha | (level << 16) | (level << 8) | level;
+        }
+      }
+    });
+  }
+
+  /**
+   * Method to copy the pixels out of a raster into a new array with
+   * no gaps between the rows, so the tiles read the old pixels while
+   * the new ones are written
+   * @param raster the raster to copy
+   * @return the pixels, width times height long
+   */
+  private static int[] copyPixels(PixelRaster raster)
+  {
+    int width = raster.getWidth();
+    int[] copy = new int[width * raster.getHeight()];
+    for (int row = 0; row < raster.getHeight(); row++)
+      System.arraycopy(raster.getData(), raster.getIndex(0, row), copy, row * width, width);
+    return copy;
+  }
+
+  /**
+   * Method to find the column or row to use for one that may be past the edge
+   * @param index the column or row
+   * @param size the width or height of the picture
+   * @param mode what to use past the edges
+   * @return the column or row in the picture, or -1 for black
+   */
+  static int borderIndex(int index, int size, BorderMode mode)
+  {
+    if (index >= 0 && index < size)
+      return index;
+    switch (mode)
+    {
+      case CLAMP:
+        return index < 0 ? 0 : size - 1;
+      case WRAP:
+        return Math.floorMod(index, size);
+      case REFLECT:
+        if (size == 1)
+          return 0;
+        int period = 2 * (size - 1);
+        index = Math.floorMod(index, period);
+        return index < size ? index : period - index;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Method to copy a tile and the border around it into a new array
+   * @param source the pixels of the picture, width times height long
+   * @param width the width of the picture
+   * @param height the height of the picture
+   * @param startRow the first row of the tile
+   * @param startCol the first column of the tile
+   * @param endRow the row after the tile
+   * @param endCol the column after the tile
+   * @param xRadius the columns of border on each side
+   * @param yRadius the rows of border above and below
+   * @param mode what to use past the edges
+   * @return the tile with its border in row-major order
+   */
+  private static int[] pad(int[] source, int width, int height,
+                           int startRow, int startCol, int endRow, int endCol,
+                           int xRadius, int yRadius, BorderMode mode)
+  {
+    int paddedWidth = endCol - startCol + 2 * xRadius;
+    int paddedHeight = endRow - startRow + 2 * yRadius;
+    int[] padded = new int[paddedWidth * paddedHeight];
+
+    // find the columns once for all the rows
+    int firstCol = startCol - xRadius;
+    boolean inside = firstCol >= 0 && firstCol + paddedWidth <= width;
+    int[] cols = null;
+    if (!inside)
+    {
+      cols = new int[paddedWidth];
+      for (int i = 0; i < paddedWidth; i++)
+        cols[i] = borderIndex(firstCol + i, width, mode);
+    }
+
+    for (int i = 0; i < paddedHeight; i++)
+    {
+      int row = borderIndex(startRow - yRadius + i, height, mode);
+      if (row < 0)
+        continue;
+      int rowStart = row * width;
+      if (inside)
+        System.arraycopy(source, rowStart + firstCol, padded, i * paddedWidth, paddedWidth);
+      else
+        for (int j = 0; j < paddedWidth; j++)
+          if (cols[j] >= 0)
+            padded[i * paddedWidth + j] = source[rowStart + cols[j]];
+    }
+    return padded;
+  }
+
+  /**
+   * Method to divide a weighted sum, add the bias, and keep it in 0 to 255
+   * @param sum the weighted sum
+   * @param divisor the divisor (positive)
+   * @param bias the bias
+   * @return the channel value
+   */
+  private static int toChannel(long sum, int divisor, int bias)
+  {
+    long value = Math.floorDiv(sum + divisor / 2, divisor) + bias;
+    return value < 0 ? 0 : value > 255 ? 255 : (int) value;
+  }
+
+  /**
+   * Method to convolve one tile a pass across and then a pass down
+   */
+  private static void convolveSeparable(int[] padded, ConvolutionKernel kernel,
+                                        PixelRaster raster, int[] data, int[] source,
+                                        int alphaBits, int startRow, int startCol,
+                                        int endRow, int endCol)
+  {
+    int[] horizontal = kernel.horizontal();
+    int[] vertical = kernel.vertical();
+    int tileWidth = endCol - startCol;
+    int tileHeight = endRow - startRow;
+    int paddedWidth = tileWidth + horizontal.length - 1;
+    int paddedHeight = tileHeight + vertical.length - 1;
+    int width = raster.getWidth();
+    int divisor = kernel.getDivisor();
+    int bias = kernel.getBias();
+
+    // across: every padded row, only the tile's columns
+    int[] reds = new int[tileWidth * paddedHeight];
+    int[] greens = new int[reds.length];
+    int[] blues = new int[reds.length];
+    for (int y = 0; y < paddedHeight; y++)
+    {
+      for (int x = 0; x < tileWidth; x++)
+      {
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        int paddedIndex = y * paddedWidth + x;
+        for (int k = 0; k < horizontal.length; k++)
+        {
+          int value = padded[paddedIndex + k];
+          int weight = horizontal[k];
+          red += weight * ((value >> 16) & 0xff);
+          green += weight * ((value >> 8) & 0xff);
+          blue += weight * (value & 0xff);
+        }
+        int index = y * tileWidth + x;
+        reds[index] = red;
+        greens[index] = green;
+        blues[index] = blue;
+      }
+    }
+
+    // down: the tile's rows, into the picture
+    for (int y = 0; y < tileHeight; y++)
+    {
+      int outIndex = raster.getIndex(startCol, startRow + y);
+      int sourceIndex = (startRow + y) * width + startCol;
+      for (int x = 0; x < tileWidth; x++)
+      {
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        int index = y * tileWidth + x;
+        for (int k = 0; k < vertical.length; k++)
+        {
+          long weight = vertical[k];
+          red += weight * reds[index];
+          green += weight * greens[index];
+          blue += weight * blues[index];
+          index += tileWidth;
+        }
+        int alpha = (source[sourceIndex++] | alphaBits) & 0xff000000;
+        data[outIndex++] = alpha | (toChannel(red, divisor, bias) << 16) |
+          (toChannel(green, divisor, bias) << 8) | toChannel(blue, divisor, bias);
+      }
+    }
+  }
+
+  /**
+   * Method to convolve one tile with the whole grid of weights
+   */
+  private static void convolveGrid(int[] padded, ConvolutionKernel kernel,
+                                   PixelRaster raster, int[] data, int[] source,
+                                   int alphaBits, int startRow, int startCol,
+                                   int endRow, int endCol)
+  {
+    int[] weights = kernel.weights();
+    int kernelWidth = kernel.getWidth();
+    int kernelHeight = kernel.getHeight();
+    int paddedWidth = endCol - startCol + kernelWidth - 1;
+    int width = raster.getWidth();
+    int divisor = kernel.getDivisor();
+    int bias = kernel.getBias();
+
+    for (int row = startRow; row < endRow; row++)
+    {
+      int outIndex = raster.getIndex(startCol, row);
+      int sourceIndex = row * width + startCol;
+      for (int col = startCol; col < endCol; col++)
+      {
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        int weightIndex = 0;
+        for (int ky = 0; ky < kernelHeight; ky++)
+        {
+          int paddedIndex = (row - startRow + ky) * paddedWidth + (col - startCol);
+          for (int kx = 0; kx < kernelWidth; kx++)
+          {
+            int weight = weights[weightIndex++];
+            if (weight == 0)
+              continue;
+            int value = padded[paddedIndex + kx];
+            red += weight * ((value >> 16) & 0xff);
+            green += weight * ((value >> 8) & 0xff);
+            blue += weight * (value & 0xff);
+          }
+        }
+        int alpha = (source[sourceIndex++] | alphaBits) & 0xff000000;
+        data[outIndex++] = alpha | (toChannel(red, divisor, bias) << 16) |
+          (toChannel(green, divisor, bias) << 8) | toChannel(blue, divisor, bias);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,276 @@
+import java.util.Arrays;
+
+/**
+ * Class for a small grid of whole number weights used by Convolution.
+ * Each new pixel is the sum of the weights times the pixels around it
+ * (the center weight lines up with the pixel itself), divided by the
+ * divisor and plus the bias.  The grid is not flipped, so a weight to
+ * the right of the center is used on the pixel to the right.
+ *
+ * Many kernels (box and Gaussian blurs, Sobel, Scharr) are a column
+ * of weights times a row of weights.  Those are found when the kernel
+ * is made, and Convolution then does a pass across and a pass down
+ * instead of visiting the whole grid for each pixel.
+ */
+public class ConvolutionKernel
+{
+
+  ////////////////////////// fields ///////////////////////////////////
+
+  /** the width of the grid (odd) */
+  private int width;
+
+  /** the height of the grid (odd) */
+  private int height;
+
+  /** the weights in row-major order */
+  private int[] weights;
+
+  /** the amount to divide the weighted sum by */
+  private int divisor;
+
+  /** the amount to add after dividing */
+  private int bias;
+
+  /** the row of weights if the grid is a column times a row, else null */
+  private int[] horizontal;
+
+  /** the column of weights if the grid is a column times a row, else null */
+  private int[] vertical;
+
+  ////////////////////// constructors /////////////////////////////////
+
+  /**
+   * A constructor that takes the grid of weights
+   * @param width the width of the grid (odd)
+   * @param height the height of the grid (odd)
+   * @param weights the weights in row-major order
+   * @param divisor the amount to divide the weighted sum by (positive)
+   * @param bias the amount to add after dividing
+   * @throws IllegalArgumentException if the sizes aren't odd or don't
+   * match the weights, the divisor isn't positive, or the grid isn't
+   * separable and the weights are so big the sums could overflow
+   */
+  public ConvolutionKernel(int width, int height, int[] weights, int divisor, int bias)
+  {
+    if (width < 1 || height < 1 || width % 2 == 0 || height % 2 == 0)
+      throw new IllegalArgumentException("the kernel must have an odd width and height");
+    if (weights.length != width * height)
+      throw new IllegalArgumentException("the kernel needs " + width * height + " weights");
+    if (divisor < 1)
+      throw new IllegalArgumentException("the divisor must be positive");
+
+    this.width = width;
+    this.height = height;
+    this.weights = weights.clone();
+    this.divisor = divisor;
+    this.bias = bias;
+    findFactors();
+
+    // a grid that isn't separable is summed in an int
+    long total = 0;
+    for (int weight : weights)
+      total += Math.abs((long) weight);
+    if (!isSeparable() && total * 255 > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("the weights are too big");
+  }
+
+  ///////////////////////// methods //////////////////////////////
+
+  /**
+   * Method to make a kernel that is a column of weights times a row
+   * @param horizontal the row of weights (odd length)
+   * @param vertical the column of weights (odd length)
+   * @param divisor the amount to divide the weighted sum by (positive)
+   * @return the kernel
+   */
+  public static ConvolutionKernel separable(int[] horizontal, int[] vertical, int divisor)
+  {
+    int[] weights = new int[horizontal.length * vertical.length];
+    for (int row = 0; row < vertical.length; row++)
+      for (int col = 0; col < horizontal.length; col++)
+        weights[row * horizontal.length + col] = vertical[row] * horizontal[col];
+    return new ConvolutionKernel(horizontal.length, vertical.length, weights, divisor, 0);
+  }
+
+  /**
+   * Method to make a kernel that averages the square around each pixel
+   * @param radius the number of pixels on each side of the center
+   * @return the box blur kernel
+   */
+  public static ConvolutionKernel box(int radius)
+  {
+    if (radius < 0)
+      throw new IllegalArgumentException("the radius can't be negative");
+    int[] ones = new int[2 * radius + 1];
+    Arrays.fill(ones, 1);
+    return separable(ones, ones, ones.length * ones.length);
+  }
+
+  /**
+   * Method to make a Gaussian blur kernel.  The kernel reaches out
+   * three times sigma on each side.
+   * @param sigma how far the blur spreads, in pixels (positive)
+   * @return the Gaussian blur kernel
+   */
+  public static ConvolutionKernel gaussian(double sigma)
+  {
+    if (!(sigma > 0))
+      throw new IllegalArgumentException("sigma must be positive");
+    int radius = Math.max(1, (int) Math.ceil(3 * sigma));
+    int[] weights = new int[2 * radius + 1];
+    int total = 0;
+    for (int i = -radius; i <= radius; i++)
+    {
+      weights[i + radius] = (int) Math.round(256 * Math.exp(-(i * i) / (2 * sigma * sigma)));
+      total += weights[i + radius];
+    }
+    if (total > 46340)
+      throw new IllegalArgumentException("sigma is too big");
+    return separable(weights, weights, total * total);
+  }
+
+  /**
+   * Method to make a kernel that sharpens edges (the pixel times 5
+   * minus the four pixels next to it)
+   * @return the sharpen kernel
+   */
+  public static ConvolutionKernel sharpen()
+  {
+    return new ConvolutionKernel(3, 3, new int[] { 0, -1,  0,
+                                                  -1,  5, -1,
+                                                   0, -1,  0 }, 1, 0);
+  }
+
+  /**
+   * Method to make the Sobel kernel for changes from left to right
+   * @return the kernel (the sum is up to 4 times a channel)
+   */
+  public static ConvolutionKernel sobelX()
+  {
+    return separable(new int[] { -1, 0, 1 }, new int[] { 1, 2, 1 }, 1);
+  }
+
+  /**
+   * Method to make the Sobel kernel for changes from top to bottom
+   * @return the kernel (the sum is up to 4 times a channel)
+   */
+  public static ConvolutionKernel sobelY()
+  {
+    return separable(new int[] { 1, 2, 1 }, new int[] { -1, 0, 1 }, 1);
+  }
+
+  /**
+   * Method to make the Scharr kernel for changes from left to right.
+   * It is like Sobel but gives a more even answer for diagonal edges.
+   * @return the kernel (the sum is up to 16 times a channel)
+   */
+  public static ConvolutionKernel scharrX()
+  {
+    return separable(new int[] { -1, 0, 1 }, new int[] { 3, 10, 3 }, 1);
+  }
+
+  /**
+   * Method to make the Scharr kernel for changes from top to bottom
+   * @return the kernel (the sum is up to 16 times a channel)
+   */
+  public static ConvolutionKernel scharrY()
+  {
+    return separable(new int[] { 3, 10, 3 }, new int[] { -1, 0, 1 }, 1);
+  }
+
+  /**
+   * Method to find a column and row of whole numbers whose product is
+   * the grid, if there are any.  That is true when every row is a
+   * multiple of one row.  The row is divided by the greatest common
+   * divisor of its weights so the column comes out whole too.
+   */
+  private void findFactors()
+  {
+    // find a weight that isn't zero to line everything up with
+    int pivot = -1;
+    for (int i = 0; i < weights.length && pivot < 0; i++)
+      if (weights[i] != 0)
+        pivot = i;
+    if (pivot < 0)
+      return;
+    int pivotRow = pivot / width;
+    int pivotCol = pivot % width;
+    long pivotWeight = weights[pivot];
+
+    // every weight must match its row's pivot column times the pivot row
+    for (int row = 0; row < height; row++)
+      for (int col = 0; col < width; col++)
+        if ((long) weights[row * width + col] * pivotWeight !=
+            (long) weights[row * width + pivotCol] * weights[pivotRow * width + col])
+          return;
+
+    int common = 0;
+    for (int col = 0; col < width; col++)
+      common = gcd(common, Math.abs(weights[pivotRow * width + col]));
+    int[] row = new int[width];
+    for (int col = 0; col < width; col++)
+      row[col] = weights[pivotRow * width + col] / common;
+    int[] column = new int[height];
+    for (int r = 0; r < height; r++)
+      column[r] = weights[r * width + pivotCol] / row[pivotCol];
+    horizontal = row;
+    vertical = column;
+  }
+
+  /**
+   * Method to find the greatest common divisor of two numbers
+   * @param a the first number (not negative)
+   * @param b the second number (not negative)
+   * @return the greatest common divisor
+   */
+  private static int gcd(int a, int b)
+  {
+    while (b != 0)
+    {
+      int next = a % b;
+      a = b;
+      b = next;
+    }
+    return a;
+  }
+
+  /** @return the width of the grid */
+  public int getWidth() { return width; }
+
+  /** @return the height of the grid */
+  public int getHeight() { return height; }
+
+  /**
+   * Method to get a weight
+   * @param col the column in the grid
+   * @param row the row in the grid
+   * @return the weight
+   */
+  public int getWeight(int col, int row) { return weights[row * width + col]; }
+
+  /** @return the amount the weighted sum is divided by */
+  public int getDivisor() { return divisor; }
+
+  /** @return the amount added after dividing */
+  public int getBias() { return bias; }
+
+  /** @return true if the grid is a column of weights times a row */
+  public boolean isSeparable() { return horizontal != null; }
+
+  /** @return a copy of the row of weights (null if not separable) */
+  public int[] getHorizontal() { return horizontal == null ? null : horizontal.clone(); }
+
+  /** @return a copy of the column of weights (null if not separable) */
+  public int[] getVertical() { return vertical == null ? null : vertical.clone(); }
+
+  /** The weights for Convolution, without copying */
+  int[] weights() { return weights; }
+
+  /** The row of weights for Convolution, without copying */
+  int[] horizontal() { return horizontal; }
+
+  /** The column of weights for Convolution, without copying */
+  int[] vertical() { return vertical; }
+
+}
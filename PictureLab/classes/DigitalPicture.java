@@ -1,5 +1,6 @@
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
 
 /**
  * Interface to describe a digital picture.  A digital picture can have an 
@@ -25,6 +26,7 @@ public interface DigitalPicture
   public Pixel getPixel(int x, int y); // get the pixel information as an object
   public Pixel[] getPixels(); // get all pixels in row-major order
   public Pixel[][] getPixels2D(); // get 2-D array of pixels in row-major order
+  public void processRaster(int startRow, int endRow, Consumer<PixelRaster> task); // work on the packed pixels of some rows
   public void load(Image image); // load the image into the picture
   public boolean load(String fileName); // load the picture from a file
   public void show(); // show the picture 
@@ -1,6 +1,11 @@
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.*;
 import java.net.*;
   
@@ -9,27 +14,64 @@ import java.net.*;
  * for students.  It uses a JFileChooser to let the user
  * pick a file and returns the chosen file name.
  * 
+ * The media directory is found once and remembered.  It can be set
+ * with setMediaPath, with the picturelab.media system property, or
+ * with the PICTURELAB_MEDIA environment variable.  The property and
+ * the variable can list several directories separated by the path
+ * separator (: or ;); a file name is then looked for in each of them
+ * in order.
+ * 
  * @author Barb Ericson ericson@cc.gatech.edu
  */
 public class FileChooser 
 {
   
+  /////////////////////// fields /////////////////////////////
+  
+  /** the system property that sets the media directories */
+  public static final String MEDIA_PROPERTY = "picturelab.media";
+  
+  /** the environment variable that sets the media directories */
+  public static final String MEDIA_ENVIRONMENT = "PICTURELAB_MEDIA";
+  
+  /** the media directories (each ending in a separator), found when first needed */
+  private static volatile List<String> mediaDirectories;
+  
+  /** the full paths found for file names when there are several directories */
+  private static Map<String,String> mediaPaths = new ConcurrentHashMap<String,String>();
+  
   /////////////////////// methods /////////////////////////////
   
   /**
-   * Method to get the full path for the passed file name
+   * Method to get the full path for the passed file name.  If there
+   * are several media directories this is the first one that has the
+   * file (or the first directory if none do).
    * @param fileName the name of a file
    * @return the full path for the file
    */
   public static String getMediaPath(String fileName) 
   {
-    String path = null;
-    String directory = getMediaDirectory();
-    boolean done = true;
+    List<String> directories = getMediaDirectories();
     
-    // get the full path
-    path = directory + fileName;
-    return path;
+    // with one directory there is nothing to look for
+    if (directories.size() == 1)
+      return directories.get(0) + fileName;
+    
+    String path = mediaPaths.get(fileName);
+    if (path != null)
+      return path;
+    for (String directory : directories)
+    {
+      if (new File(directory + fileName).exists())
+      {
+        path = directory + fileName;
+        mediaPaths.put(fileName, path);
+        return path;
+      }
+    }
+    
+    // not found (yet), so don't remember it
+    return directories.get(0) + fileName;
   }
   
   /**
@@ -94,10 +136,106 @@ public class FileChooser
   }
   
   /**
-   * Method to get the directory for the media
+   * Method to get the directory for the media (the first one if
+   * there are several)
    * @return the media directory
    */
   public static String getMediaDirectory() 
+  {
+    return getMediaDirectories().get(0);
+  }
+  
+  /**
+   * Method to get all the media directories in the order they are
+   * searched.  They are found the first time this is called.
+   * @return the media directories, each ending in a separator
+   */
+  public static List<String> getMediaDirectories()
+  {
+    List<String> directories = mediaDirectories;
+    if (directories == null)
+    {
+      synchronized (FileChooser.class)
+      {
+        directories = mediaDirectories;
+        if (directories == null)
+        {
+          String setting = System.getProperty(MEDIA_PROPERTY);
+          if (setting == null)
+            setting = System.getenv(MEDIA_ENVIRONMENT);
+          if (setting != null && !setting.trim().isEmpty())
+            directories = toDirectoryList(setting.split(File.pathSeparator));
+          else
+            directories = toDirectoryList(findMediaDirectory());
+          mediaDirectories = directories;
+        }
+      }
+    }
+    return directories;
+  }
+  
+  /**
+   * Method to set the media directory to use from now on
+   * @param directory the directory (null to find it again the usual way)
+   */
+  public static void setMediaPath(String directory)
+  {
+    if (directory == null)
+      setMediaDirectories((String[]) null);
+    else
+      setMediaDirectories(directory);
+  }
+  
+  /**
+   * Method to set the media directories to search from now on
+   * @param directories the directories in the order to search them
+   * (null to find them again the usual way)
+   */
+  public static synchronized void setMediaDirectories(String... directories)
+  {
+    if (directories == null || directories.length == 0)
+      mediaDirectories = null;
+    else
+      mediaDirectories = toDirectoryList(directories);
+    clearMediaPathCache();
+  }
+  
+  /**
+   * Method to forget the full paths found for file names, for example
+   * after files have been added to or removed from the media directories
+   */
+  public static void clearMediaPathCache()
+  {
+    mediaPaths.clear();
+  }
+  
+  /**
+   * Method to make a list of directory names that each end in a separator
+   * @param directories the directory names (empty ones are skipped)
+   * @return the list (never empty)
+   */
+  private static List<String> toDirectoryList(String... directories)
+  {
+    List<String> list = new ArrayList<String>();
+    for (String directory : directories)
+    {
+      if (directory == null || directory.trim().isEmpty())
+        continue;
+      if (!directory.endsWith("/") && !directory.endsWith(File.separator))
+        directory = directory + File.separator;
+      list.add(directory);
+    }
+    if (list.isEmpty())
+      list.add(String.valueOf(findMediaDirectory()));
+    return Collections.unmodifiableList(list);
+  }
+  
+  /**
+   * Method to find the images directory next to the directory this
+   * class was loaded from
+   * @return the media directory
+   */
+  private static String findMediaDirectory() 
   {
     String directory = null;
     boolean done = false;
@@ -0,0 +1,501 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Class with the flips, mirrors, and quarter turns of a picture, done
+ * straight on the packed pixels with rows split over the TileExecutor
+ * pool.  Flips, mirrors, and the half turn change the picture in place
+ * by swapping or copying pixels.  The quarter turns and transposes make
+ * a new picture (its width and height are swapped), copying in blocks
+ * made by cutting the picture in half again and again, so both the
+ * rows read and the rows written stay in the cache at every level.
+ *
+ * It can also read the orientation a camera wrote in the EXIF data of
+ * a JPEG file and turn the picture the right way up.
+ */
+public class GeometricTransforms
+{
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the biggest width and height copied with a plain loop by a transpose */
+  private static final int LEAF_SIZE = 64;
+
+  /** the EXIF tag for the orientation */
+  private static final int ORIENTATION_TAG = 0x0112;
+
+  ////////////////////////// Methods //////////////////////////////////
+
+  /**
+   * Method to flip a picture from left to right in place
+   * @param picture the picture to flip
+   */
+  public static void flipHorizontal(SimplePicture picture)
+  {
+    PixelRaster raster = picture.getRaster();
+    int[] data = raster.getData();
+    int width = raster.getWidth();
+    TileExecutor.executeRows(0, 0, raster.getHeight(), width,
+                             (startRow, startCol, endRow, endCol) ->
+    {
+      for (int row = startRow; row < endRow; row++)
+        reverse(data, raster.getIndex(0, row), width);
+    });
+  }
+
+  /**
+   * Method to flip a picture from top to bottom in place
+   * @param picture the picture to flip
+   */
+  public static void flipVertical(SimplePicture picture)
+  {
+    PixelRaster raster = picture.getRaster();
+    int[] data = raster.getData();
+    int width = raster.getWidth();
+    int height = raster.getHeight();
+    TileExecutor.executeRows(0, 0, height / 2, width, (startRow, startCol, endRow, endCol) ->
+    {
+      int[] buffer = new int[width];
+      for (int row = startRow; row < endRow; row++)
+        swapRows(data, raster.getIndex(0, row), raster.getIndex(0, height - 1 - row),
+                 width, buffer, false);
+    });
+  }
+
+  /**
+   * Method to turn a picture half way around in place
+   * @param picture the picture to turn
+   */
+  public static void rotate180(SimplePicture picture)
+  {
+    PixelRaster raster = picture.getRaster();
+    int[] data = raster.getData();
+    int width = raster.getWidth();
+    int height = raster.getHeight();
+    TileExecutor.executeRows(0, 0, (height + 1) / 2, width,
+                             (startRow, startCol, endRow, endCol) ->
+    {
+      int[] buffer = new int[width];
+      for (int row = startRow; row < endRow; row++)
+      {
+        int bottom = height - 1 - row;
+        if (bottom == row)
+          reverse(data, raster.getIndex(0, row), width);
+        else
+          swapRows(data, raster.getIndex(0, row), raster.getIndex(0, bottom),
+                   width, buffer, true);
+      }
+    });
+  }
+
+  /**
+   * Method to reverse part of an array
+   * @param data the array
+   * @param start the index of the first item
+   * @param length the number of items
+   */
+  private static void reverse(int[] data, int start, int length)
+  {
+    for (int left = start, right = start + length - 1; left < right; left++, right--)
+    {
+      int value = data[left];
+      data[left] = data[right];
+      data[right] = value;
+    }
+  }
+
+  /**
+   * Method to swap two rows, reversing both if asked
+   * @param data the array with the rows
+   * @param first the index of the start of one row
+   * @param second the index of the start of the other row
+   * @param width the length of the rows
+   * @param buffer an array at least width long to use
+   * @param reversed true to reverse the rows as they are swapped
+   */
+  private static void swapRows(int[] data, int first, int second, int width, int[] buffer,
+                               boolean reversed)
+  {
+    System.arraycopy(data, first, buffer, 0, width);
+    if (reversed)
+    {
+      for (int col = 0; col < width; col++)
+        data[first + col] = data[second + width - 1 - col];
+      for (int col = 0; col < width; col++)
+        data[second + col] = buffer[width - 1 - col];
+    }
+    else
+    {
+      System.arraycopy(data, second, data, first, width);
+      System.arraycopy(buffer, 0, data, second, width);
+    }
+  }
+
+  /**
+   * Method to copy the columns on one side of a vertical mirror line to
+   * the other side.  Column col is copied to column sum - col, so the
+   * line is halfway between columns 0 and sum (sum = width - 1 mirrors
+   * around the middle).  Columns that land outside the picture are
+   * skipped.  Like setting the color of each pixel, only the colors are
+   * copied and each pixel keeps its own alpha.
+   * @param picture the picture to change
+   * @param sum the column plus its mirror column
+   * @param leftToRight true to copy the left side onto the right side,
+   * false to copy the right side onto the left side
+   */
+  public static void mirrorColumns(SimplePicture picture, int sum, boolean leftToRight)
+  {
+    PixelRaster raster = picture.getRaster();
+    int[] data = raster.getData();
+    int width = raster.getWidth();
+    // the alpha of a pixel is kept, so only copy the colors
+    int colorMask = raster.hasAlpha() ? 0x00ffffff : 0xffffffff;
+
+    // the columns on the left of the line that have a mirror column
+    int first = Math.max(0, sum - (width - 1));
+    int end = Math.min(width, (sum + 1) / 2);
+    if (first >= end)
+      return;
+    TileExecutor.executeRows(0, 0, raster.getHeight(), width,
+                             (startRow, startCol, endRow, endCol) ->
+    {
+      for (int row = startRow; row < endRow; row++)
+      {
+        int rowStart = raster.getIndex(0, row);
+        for (int col = first; col < end; col++)
+        {
+          int from = rowStart + (leftToRight ? col : sum - col);
+          int to = rowStart + (leftToRight ? sum - col : col);
+          data[to] = (data[to] & ~colorMask) | (data[from] & colorMask);
+        }
+      }
+    });
+  }
+
+  /**
+   * Method to copy the rows on one side of a horizontal mirror line to
+   * the other side.  Row row is copied to row sum - row, so the line is
+   * halfway between rows 0 and sum (sum = height - 1 mirrors around the
+   * middle).  Rows that land outside the picture are skipped.  Like
+   * setting the color of each pixel, only the colors are copied and each
+   * pixel keeps its own alpha.
+   * @param picture the picture to change
+   * @param sum the row plus its mirror row
+   * @param topToBottom true to copy the top side onto the bottom side,
+   * false to copy the bottom side onto the top side
+   */
+  public static void mirrorRows(SimplePicture picture, int sum, boolean topToBottom)
+  {
+    PixelRaster raster = picture.getRaster();
+    int[] data = raster.getData();
+    int width = raster.getWidth();
+    int first = Math.max(0, sum - (raster.getHeight() - 1));
+    int end = Math.min(raster.getHeight(), (sum + 1) / 2);
+    if (first >= end)
+      return;
+    TileExecutor.executeRows(first, 0, end, width, (startRow, startCol, endRow, endCol) ->
+    {
+      for (int row = startRow; row < endRow; row++)
+      {
+        int from = raster.getIndex(0, topToBottom ? row : sum - row);
+        int to = raster.getIndex(0, topToBottom ? sum - row : row);
+        if (!raster.hasAlpha())
+          System.arraycopy(data, from, data, to, width);
+        else
+          for (int col = 0; col < width; col++)
+            data[to + col] = (data[to + col] & 0xff000000) |
+              (data[from + col] & 0x00ffffff);
+      }
+    });
+  }
+
+  /**
+   * Method to make a copy of a picture turned a quarter turn clockwise
+   * @param picture the picture to turn
+   * @return the new picture
+   */
+  public static Picture rotate90(SimplePicture picture)
+  {
+    PixelRaster raster = picture.getRaster();
+    int stride = raster.getScanlineStride();
+    // new (x, y) comes from old (y, height - 1 - x)
+    return remap(raster, raster.getIndex(0, raster.getHeight() - 1), 1, -stride);
+  }
+
+  /**
+   * Method to make a copy of a picture turned a quarter turn
+   * counterclockwise (three quarter turns clockwise)
+   * @param picture the picture to turn
+   * @return the new picture
+   */
+  public static Picture rotate270(SimplePicture picture)
+  {
+    PixelRaster raster = picture.getRaster();
+    // new (x, y) comes from old (width - 1 - y, x)
+    return remap(raster, raster.getIndex(raster.getWidth() - 1, 0), -1,
+                 raster.getScanlineStride());
+  }
+
+  /**
+   * Method to make a copy of a picture mirrored across the diagonal from
+   * the top left, so rows become columns
+   * @param picture the picture to transpose
+   * @return the new picture
+   */
+  public static Picture transpose(SimplePicture picture)
+  {
+    PixelRaster raster = picture.getRaster();
+    // new (x, y) comes from old (y, x)
+    return remap(raster, raster.getIndex(0, 0), 1, raster.getScanlineStride());
+  }
+
+  /**
+   * Method to make a copy of a picture mirrored across the diagonal from
+   * the top right
+   * @param picture the picture to transpose
+   * @return the new picture
+   */
+  public static Picture transverse(SimplePicture picture)
+  {
+    PixelRaster raster = picture.getRaster();
+    // new (x, y) comes from old (width - 1 - y, height - 1 - x)
+    return remap(raster, raster.getIndex(raster.getWidth() - 1, raster.getHeight() - 1), -1,
+                 -raster.getScanlineStride());
+  }
+
+  /**
+   * Method to make a picture with the width and height swapped where
+   * the pixel at new (x, y) is at index start + y * rowStep + x * colStep
+   * in the old pixels
+   * @param raster the old pixels
+   * @param start the index of the old pixel for new (0, 0)
+   * @param rowStep the change in the old index for one new row down
+   * @param colStep the change in the old index for one new column across
+   * @return the new picture
+   */
+  private static Picture remap(PixelRaster raster, int start, int rowStep, int colStep)
+  {
+    int newWidth = raster.getHeight();
+    int newHeight = raster.getWidth();
+    BufferedImage image = new BufferedImage(newWidth, newHeight, raster.hasAlpha() ?
+                                            BufferedImage.TYPE_INT_ARGB :
+                                            BufferedImage.TYPE_INT_RGB);
+    PixelRaster result = PixelRaster.wrap(image);
+    int[] from = raster.getData();
+    int[] to = result.getData();
+    int toStart = result.getIndex(0, 0);
+    int toStride = result.getScanlineStride();
+    TileExecutor.executeRows(0, 0, newHeight, newWidth, (startRow, startCol, endRow, endCol) ->
+      copyBlock(from, start, rowStep, colStep, to, toStart, toStride,
+                startRow, endRow, 0, newWidth));
+    return new Picture(image);
+  }
+
+  /**
+   * Method to copy a rectangle of pixels where the pixel at (x, y) in
+   * the target is at index fromStart + y * rowStep + x * colStep in the
+   * source.  When the steps cross rows (a transpose) reading along a
+   * row of one means jumping a row at a time in the other, so the
+   * rectangle is cut in half across its longer side again and again
+   * until the pieces fit in the cache, and only those are copied with
+   * a plain loop.  This works well for any cache size without tuning.
+   * @param from the source pixels
+   * @param fromStart the source index for target (0, 0)
+   * @param rowStep the change in the source index for one row down
+   * @param colStep the change in the source index for one column across
+   * @param to the target pixels
+   * @param toStart the target index of (0, 0)
+   * @param toStride the distance in the target from one row to the next
+   * @param startRow the first target row to copy
+   * @param endRow the target row to stop before
+   * @param startCol the first target column to copy
+   * @param endCol the target column to stop before
+   */
+  private static void copyBlock(int[] from, int fromStart, int rowStep, int colStep,
+                                int[] to, int toStart, int toStride,
+                                int startRow, int endRow, int startCol, int endCol)
+  {
+    int rows = endRow - startRow;
+    int cols = endCol - startCol;
+    if (rows <= LEAF_SIZE && cols <= LEAF_SIZE)
+    {
+      for (int row = startRow; row < endRow; row++)
+      {
+        int toIndex = toStart + row * toStride + startCol;
+        int fromIndex = fromStart + row * rowStep + startCol * colStep;
+        for (int col = startCol; col < endCol; col++)
+        {
+          to[toIndex++] = from[fromIndex];
+          fromIndex += colStep;
+        }
+      }
+    }
+    else if (rows >= cols)
+    {
+      int middle = startRow + rows / 2;
+      copyBlock(from, fromStart, rowStep, colStep, to, toStart, toStride,
+                startRow, middle, startCol, endCol);
+      copyBlock(from, fromStart, rowStep, colStep, to, toStart, toStride,
+                middle, endRow, startCol, endCol);
+    }
+    else
+    {
+      int middle = startCol + cols / 2;
+      copyBlock(from, fromStart, rowStep, colStep, to, toStart, toStride,
+                startRow, endRow, startCol, middle);
+      copyBlock(from, fromStart, rowStep, colStep, to, toStart, toStride,
+                startRow, endRow, middle, endCol);
+    }
+  }
+
+  /**
+   * Method to mirror the biggest square in the top left of a picture
+   * across its diagonal from the top left corner, copying the bottom
+   * left half onto the top right half (the pixel at (x, y) below the
+   * diagonal is copied to (y, x)).  The rest of the picture doesn't
+   * change.  Use transpose to mirror the whole picture.
+   * @param picture the picture to change
+   */
+  public static void mirrorDiagonal(SimplePicture picture)
+  {
+    PixelRaster raster = picture.getRaster();
+    int[] data = raster.getData();
+    int start = raster.getIndex(0, 0);
+    int stride = raster.getScanlineStride();
+    int size = Math.min(raster.getWidth(), raster.getHeight());
+
+    // each band of target rows above the diagonal only reads pixels
+    // below it, so the bands can be done at the same time
+    TileExecutor.executeRows(0, 0, size, size, (startRow, startCol, endRow, endCol) ->
+    {
+      // the part of the band right of the band's own columns
+      copyBlock(data, start, 1, stride, data, start, stride,
+                startRow, endRow, endRow, size);
+
+      // the small triangle next to the diagonal
+      for (int row = startRow; row < endRow; row++)
+        for (int col = row + 1; col < endRow; col++)
+          data[start + row * stride + col] = data[start + col * stride + row];
+    });
+  }
+
+  /**
+   * Method to turn a picture the right way up for an EXIF orientation
+   * @param picture the picture as it was stored
+   * @param orientation the EXIF orientation (1 to 8)
+   * @return the picture the right way up (the same picture, changed in
+   * place, for orientations 1 to 4, else a new picture)
+   */
+  public static SimplePicture orient(SimplePicture picture, int orientation)
+  {
+    switch (orientation)
+    {
+      case 2:
+        flipHorizontal(picture);
+        return picture;
+      case 3:
+        rotate180(picture);
+        return picture;
+      case 4:
+        flipVertical(picture);
+        return picture;
+      case 5:
+        return transpose(picture);
+      case 6:
+        return rotate90(picture);
+      case 7:
+        return transverse(picture);
+      case 8:
+        return rotate270(picture);
+      default:
+        return picture;
+    }
+  }
+
+  /**
+   * Method to read the orientation a camera saved in a JPEG file
+   * @param file the file
+   * @return the EXIF orientation (1 to 8), or 1 if the file doesn't
+   * have one
+   * @throws IOException if the file can't be read
+   */
+  public static int readExifOrientation(File file) throws IOException
+  {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+           new FileInputStream(file))))
+    {
+      if (in.readUnsignedShort() != 0xffd8)
+        return 1;
+      while (true)
+      {
+        int marker = in.readUnsignedShort();
+        // the pixels (start of scan) or the end come after the EXIF data
+        if ((marker & 0xff00) != 0xff00 || marker == 0xffda || marker == 0xffd9)
+          return 1;
+        int length = in.readUnsignedShort() - 2;
+        if (length < 0)
+          return 1;
+        if (marker != 0xffe1)
+        {
+          in.skipBytes(length);
+          continue;
+        }
+        byte[] segment = new byte[length];
+        in.readFully(segment);
+        int orientation = findOrientation(segment);
+        if (orientation > 0)
+          return orientation;
+      }
+    }
+    catch (EOFException ex)
+    {
+      return 1;
+    }
+  }
+
+  /**
+   * Method to find the orientation in an APP1 segment
+   * @param segment the bytes of the segment after the length
+   * @return the orientation, or 0 if it isn't EXIF or has none
+   */
+  private static int findOrientation(byte[] segment)
+  {
+    // "Exif" then two zero bytes, then a TIFF header
+    if (segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' ||
+        segment[2] != 'i' || segment[3] != 'f' || segment[4] != 0 || segment[5] != 0)
+      return 0;
+    ByteBuffer tiff = ByteBuffer.wrap(segment, 6, segment.length - 6).slice();
+    if (tiff.get(0) == 'I' && tiff.get(1) == 'I')
+      tiff.order(ByteOrder.LITTLE_ENDIAN);
+    else if (tiff.get(0) != 'M' || tiff.get(1) != 'M')
+      return 0;
+    if (tiff.getShort(2) != 42)
+      return 0;
+
+    // look through the entries of the first directory
+    int directory = tiff.getInt(4);
+    if (directory < 8 || directory + 2 > tiff.limit())
+      return 0;
+    int count = tiff.getShort(directory) & 0xffff;
+    for (int i = 0; i < count; i++)
+    {
+      int entry = directory + 2 + 12 * i;
+      if (entry + 12 > tiff.limit())
+        return 0;
+      if ((tiff.getShort(entry) & 0xffff) == ORIENTATION_TAG)
+      {
+        int orientation = tiff.getShort(entry + 8) & 0xffff;
+        return orientation >= 1 && orientation <= 8 ? orientation : 0;
+      }
+    }
+    return 0;
+  }
+
+}
@@ -1,9 +1,17 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * Class to display an image and the current location with a + sign
+ * Class to display an image and the current location with a + sign.
+ * The image can be shown zoomed in or out by any amount.  The zoomed
+ * image is drawn in square tiles that are only made when they are first
+ * painted and then kept (up to twice as many as fit in the visible part
+ * of the display), so zooming in on a big image doesn't make a huge
+ * scaled copy of it and scrolling back just copies tiles.  Moving the
+ * + only repaints around the old and new locations.
  * 
  * @author Barb Ericson ericson@cc.gatech.edu
  */
@@ -11,6 +19,11 @@ public class ImageDisplay extends JPanel implements Scrollable
 {
   
   /////////////////////////// fields (attributes ///////////////////////////
+  /** the width and height of each tile of the zoomed image */
+  public static final int TILE_SIZE = 256;
+  /** how far the + reaches from the current location, with its outline */
+  private static final int CROSS_REACH = 4;
+  
   /** the image to draw */
   private Image image;         
   /** the preferred size of the display */
@@ -19,6 +32,16 @@ public class ImageDisplay extends JPanel implements Scrollable
   private int currentX = 0;    
   /** the current y index */
   private int currentY = 0;    
+  /** the amount the image is zoomed (1 is actual size) */
+  private double zoom = 1;
+  /** the tiles made so far by row and column, least recently used first */
+  private LinkedHashMap<Long,Image> tiles = new LinkedHashMap<Long,Image>(16, 0.75f, true)
+  {
+    protected boolean removeEldestEntry(Map.Entry<Long,Image> eldest)
+    {
+      return size() > getMaxTiles();
+    }
+  };
   
   //////////////////////////// constructors /////////////////////////////////
   
@@ -73,8 +96,7 @@ public class ImageDisplay extends JPanel implements Scrollable
    */
   public void setCurrentX(int x) 
   {
-    currentX = x;
-    repaint();
+    setCurrentLocation(x, currentY);
   }
   
   /**
@@ -83,8 +105,32 @@ public class ImageDisplay extends JPanel implements Scrollable
    */
   public void setCurrentY(int y) 
   {
+    setCurrentLocation(currentX, y);
+  }
+  
+  /**
+   * Method to set the current x and y, repainting only around the old
+   * and new locations of the +
+   * @param x the x value to use
+   * @param y the y value to use
+   */
+  public void setCurrentLocation(int x, int y)
+  {
+    if (x == currentX && y == currentY)
+      return;
+    repaintCross();
+    currentX = x;
     currentY = y;
-    repaint();
+    repaintCross();
+  }
+  
+  /**
+   * Method to ask for the area around the + to be repainted
+   */
+  private void repaintCross()
+  {
+    repaint(currentX - CROSS_REACH, currentY - CROSS_REACH,
+            2 * CROSS_REACH + 1, 2 * CROSS_REACH + 1);
   }
   
   /**
@@ -94,7 +140,37 @@ public class ImageDisplay extends JPanel implements Scrollable
   public void setImage(Image theImage)
   {
     image = theImage;
-    setPreferredSize(new Dimension(image.getWidth(this),image.getHeight(this)));
+    tiles.clear();
+    updateSize();
+  }
+  
+  /**
+   * Method to get the amount the image is zoomed
+   * @return the zoom (1 is actual size)
+   */
+  public double getZoom() { return zoom; }
+  
+  /**
+   * Method to set the amount the image is zoomed
+   * @param zoom the zoom (1 is actual size, 2 is twice as big)
+   */
+  public void setZoom(double zoom)
+  {
+    if (!(zoom > 0))
+      throw new IllegalArgumentException("the zoom must be positive");
+    this.zoom = zoom;
+    tiles.clear();
+    updateSize();
+  }
+  
+  /**
+   * Method to set the preferred size to the zoomed image size
+   */
+  private void updateSize()
+  {
+    setPreferredSize(new Dimension((int) (image.getWidth(this) * zoom),
+                                   (int) (image.getHeight(this) * zoom)));
+    revalidate();
     repaint();
   }
   
@@ -147,6 +223,119 @@ public class ImageDisplay extends JPanel implements Scrollable
   public boolean getScrollableTracksViewportHeight()
   { return false; }
   
+  /**
+   * Method to draw the tiles of the zoomed image that are inside the
+   * area being painted, making any that aren't in the cache
+   * @param g the graphics object for drawing with
+   */
+  private void drawTiles(Graphics g)
+  {
+    Rectangle clip = g.getClipBounds();
+    if (clip == null)
+      clip = new Rectangle(0, 0, getWidth(), getHeight());
+    int width = (int) (image.getWidth(this) * zoom);
+    int height = (int) (image.getHeight(this) * zoom);
+    int firstCol = Math.max(0, clip.x / TILE_SIZE);
+    int firstRow = Math.max(0, clip.y / TILE_SIZE);
+    int lastCol = Math.min(width, clip.x + clip.width) - 1;
+    int lastRow = Math.min(height, clip.y + clip.height) - 1;
+    for (int row = firstRow; row * TILE_SIZE <= lastRow; row++)
+      for (int col = firstCol; col * TILE_SIZE <= lastCol; col++)
+        g.drawImage(getTile(col, row, width, height), col * TILE_SIZE, row * TILE_SIZE, null);
+  }
+  
+  /**
+   * Method to get the most tiles to keep: twice the number of tiles
+   * that can show at once in the visible part of the display, so the
+   * tiles on screen are never thrown away while they are being drawn
+   * (each tile is at most 256 KB)
+   * @return the most tiles to keep
+   */
+  private int getMaxTiles()
+  {
+    Rectangle visible = getVisibleRect();
+    int cols = visible.width / TILE_SIZE + 2;
+    int rows = visible.height / TILE_SIZE + 2;
+    return 2 * cols * rows;
+  }
+  
+  /**
+   * Method to get a tile of the zoomed image from the cache, making it
+   * if it isn't there
+   * @param col the column of the tile
+   * @param row the row of the tile
+   * @param width the width of the zoomed image
+   * @param height the height of the zoomed image
+   * @return the tile
+   */
+  private Image getTile(int col, int row, int width, int height)
+  {
+    Long key = ((long) row << 32) | col;
+    Image tile = tiles.get(key);
+    if (tile == null)
+    {
+      int tileX = col * TILE_SIZE;
+      int tileY = row * TILE_SIZE;
+      tile = makeTile(tileX, tileY, Math.min(TILE_SIZE, width - tileX),
+                      Math.min(TILE_SIZE, height - tileY));
+      tiles.put(key, tile);
+    }
+    return tile;
+  }
+  
+  /**
+   * Method to make one tile of the zoomed image.  Tiles are made as
+   * images compatible with the screen so drawing them is a fast copy.
+   * Only the image pixels under the tile are scaled, and whole image
+   * pixels are scaled so each one is a neat square when zoomed in.
+   * @param tileX the x of the tile in the zoomed image
+   * @param tileY the y of the tile in the zoomed image
+   * @param tileWidth the width of the tile
+   * @param tileHeight the height of the tile
+   * @return the tile
+   */
+  private Image makeTile(int tileX, int tileY, int tileWidth, int tileHeight)
+  {
+    int transparency = Transparency.OPAQUE;
+    if (image instanceof BufferedImage)
+      transparency = ((BufferedImage) image).getTransparency();
+    GraphicsConfiguration config = getGraphicsConfiguration();
+    BufferedImage tile;
+    if (config != null)
+      tile = config.createCompatibleImage(tileWidth, tileHeight, transparency);
+    else
+      tile = new BufferedImage(tileWidth, tileHeight, transparency == Transparency.OPAQUE ?
+                               BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    
+    // find the image pixels under the tile
+    int sourceX1 = (int) Math.floor(tileX / zoom);
+    int sourceY1 = (int) Math.floor(tileY / zoom);
+    int sourceX2 = Math.min(image.getWidth(this), (int) Math.ceil((tileX + tileWidth) / zoom));
+    int sourceY2 = Math.min(image.getHeight(this), (int) Math.ceil((tileY + tileHeight) / zoom));
+    
+    Graphics2D g2 = tile.createGraphics();
+    g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, zoom >= 1 ?
+                        RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR :
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g2.drawImage(image,
+                 (int) (sourceX1 * zoom) - tileX, (int) (sourceY1 * zoom) - tileY,
+                 (int) (sourceX2 * zoom) - tileX, (int) (sourceY2 * zoom) - tileY,
+                 sourceX1, sourceY1, sourceX2, sourceY2, null);
+    g2.dispose();
+    return tile;
+  }
+  
+  /**
+   * Method to throw away the cached tiles so they are made again from
+   * the image the next time they are painted.  Call this after the
+   * pixels in the image change.
+   */
+  public void clearTiles()
+  {
+    tiles.clear();
+    repaint();
+  }
+  
   /**
    * Method to handle displaying this object
    * @param g the graphics object for drawing with
@@ -159,13 +348,13 @@ public class ImageDisplay extends JPanel implements Scrollable
     int xEnd = currentX + num;
     int yStart = currentY - num;
     int yEnd = currentY + num;
-    int width = image.getWidth(this);
+    int width = (int) (image.getWidth(this) * zoom);
     int maxX = width - 1;
-    int height = image.getHeight(this);
+    int height = (int) (image.getHeight(this) * zoom);
     int maxY = height - 1;
     
     // draw the image
-    g.drawImage(image,0,0,this);
+    drawTiles(g);
     
     // check if the current index is in the image
     if (currentX >= 0 && currentX < width &&
@@ -0,0 +1,652 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A class for a picture whose pixels are kept in a memory-mapped file
+ * instead of in a BufferedImage on the heap.  The operating system
+ * pages the pixels in and out as they are used, so a picture can be
+ * much bigger than the heap, and opening a saved one again is almost
+ * instant since nothing has to be decoded.
+ *
+ * The file starts with a small header (a magic number, the width, the
+ * height, and whether the alpha is used) followed by the packed ARGB
+ * ints of each row, top to bottom.  Changes go straight to the file.
+ *
+ * Pixel objects, getBasicPixel, and setBasicPixel work as they do for
+ * SimplePicture.  There is no getRaster, since the pixels aren't in an
+ * int array; processRaster works on a copy of a band of rows as packed
+ * ints and copies it back.  Use applyLookupTable and transform for
+ * point operations, or forEachBand to run any Picture filter one band
+ * of rows at a time.
+ * getBufferedImage, show, explore, and write make a copy on the heap,
+ * so only use them on pictures that fit.
+ */
+public class MappedPicture implements DigitalPicture, Closeable
+{
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the number at the start of every mapped picture file ("PXL1") */
+  public static final int MAGIC = 0x50584c31;
+
+  /** the number of bytes before the pixels */
+  public static final int HEADER_SIZE = 16;
+
+  /** the most bytes mapped as one buffer */
+  private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+  /** the file name associated with the picture */
+  private String fileName;
+
+  /** the title of the picture */
+  private String title;
+
+  /** the channel for the file */
+  private FileChannel channel;
+
+  /** the width of the picture in pixels */
+  private int width;
+
+  /** the height of the picture in pixels */
+  private int height;
+
+  /** true if the alpha bits are used */
+  private boolean hasAlpha;
+
+  /** the number of rows in each mapped chunk */
+  private int rowsPerChunk;
+
+  /** the mapped chunks of the file (each holds rowsPerChunk rows) */
+  private MappedByteBuffer[] chunks;
+
+  /** int views of the chunks */
+  private IntBuffer[] chunkInts;
+
+  /////////////////////// Constructors /////////////////////////
+
+  /**
+   * A constructor that maps an open file channel.  Use create or open.
+   * @param fileName the name of the file
+   * @param channel the open channel for the file
+   * @param width the width in pixels
+   * @param height the height in pixels
+   * @param hasAlpha true if the alpha bits are used
+   * @throws IOException if the file can't be mapped
+   */
+  private MappedPicture(String fileName, FileChannel channel,
+                        int width, int height, boolean hasAlpha) throws IOException
+  {
+    this.fileName = fileName;
+    this.title = fileName;
+    this.channel = channel;
+    this.width = width;
+    this.height = height;
+    this.hasAlpha = hasAlpha;
+
+    // map whole rows at a time so a row is never split between chunks
+    long rowBytes = 4L * width;
+    rowsPerChunk = (int) Math.max(1, Math.min(height, MAX_CHUNK_BYTES / rowBytes));
+    int chunkCount = (height + rowsPerChunk - 1) / rowsPerChunk;
+    chunks = new MappedByteBuffer[chunkCount];
+    chunkInts = new IntBuffer[chunkCount];
+    for (int chunk = 0; chunk < chunkCount; chunk++)
+    {
+      int rows = Math.min(rowsPerChunk, height - chunk * rowsPerChunk);
+      chunks[chunk] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                  HEADER_SIZE + chunk * rowsPerChunk * rowBytes,
+                                  rows * rowBytes);
+      chunks[chunk].order(ByteOrder.LITTLE_ENDIAN);
+      chunkInts[chunk] = chunks[chunk].asIntBuffer();
+    }
+  }
+
+  ////////////////////////// Methods //////////////////////////////////
+
+  /**
+   * Method to make a new mapped picture file.  Any file with the same
+   * name is replaced.  All the pixels start out black (and transparent
+   * if hasAlpha is true).
+   * @param fileName the name of the file to make
+   * @param width the width in pixels
+   * @param height the height in pixels
+   * @param hasAlpha true if the alpha bits are used
+   * @return the new picture
+   * @throws IOException if the file can't be made
+   */
+  public static MappedPicture create(String fileName, int width, int height,
+                                     boolean hasAlpha) throws IOException
+  {
+    if (width < 1 || height < 1)
+      throw new IllegalArgumentException("width and height must be at least 1");
+    FileChannel channel = FileChannel.open(new File(fileName).toPath(),
+                                           StandardOpenOption.CREATE,
+                                           StandardOpenOption.TRUNCATE_EXISTING,
+                                           StandardOpenOption.READ,
+                                           StandardOpenOption.WRITE);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(width).putInt(height).putInt(hasAlpha ? 1 : 0);
+      header.flip();
+      channel.write(header, 0);
+      return new MappedPicture(fileName, channel, width, height, hasAlpha);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Method to open a mapped picture file that was made before
+   * @param fileName the name of the file
+   * @return the picture
+   * @throws IOException if the file can't be opened or isn't a mapped picture
+   */
+  public static MappedPicture open(String fileName) throws IOException
+  {
+    FileChannel channel = FileChannel.open(new File(fileName).toPath(),
+                                           StandardOpenOption.READ,
+                                           StandardOpenOption.WRITE);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining() && channel.read(header, header.position()) > 0);
+      header.flip();
+      if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC)
+        throw new IOException(fileName + " is not a mapped picture file");
+      int width = header.getInt();
+      int height = header.getInt();
+      boolean hasAlpha = header.getInt() != 0;
+      if (width < 1 || height < 1 ||
+          channel.size() < HEADER_SIZE + 4L * width * height)
+        throw new IOException(fileName + " is not a complete mapped picture file");
+      return new MappedPicture(fileName, channel, width, height, hasAlpha);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Method to decode a picture file (jpg, png, etc) into a new mapped
+   * picture file.  BMP files and TIFF files stored in strips or tiles
+   * are decoded a band of rows at a time, so they don't have to fit in
+   * the heap; other files are decoded whole (see BandReader).
+   * @param imageFileName the picture file to decode (looked up in the
+   * media directory if it can't be read as is)
+   * @param fileName the name of the mapped picture file to make
+   * @return the new picture
+   * @throws IOException if the picture can't be decoded or the file made
+   */
+  public static MappedPicture decode(String imageFileName, String fileName) throws IOException
+  {
+    File imageFile = new File(imageFileName);
+    if (!imageFile.canRead())
+      imageFile = new File(FileChooser.getMediaPath(imageFileName));
+    ImageInputStream input = ImageIO.createImageInputStream(imageFile);
+    if (input == null)
+      throw new IOException(imageFileName +
+                            " could not be opened. Check that you specified the path");
+    ImageReader reader = null;
+    MappedPicture picture = null;
+    try {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext())
+        throw new IOException(imageFileName + " could not be decoded");
+      reader = readers.next();
+      reader.setInput(input, false, true);
+
+      BandReader bands = new BandReader(reader, StreamingPictureProcessor.DEFAULT_BAND_HEIGHT,
+                                        1, 1);
+      boolean alpha = reader.getRawImageType(0) != null &&
+        reader.getRawImageType(0).getColorModel().hasAlpha();
+      picture = create(fileName, bands.getWidth(), bands.getHeight(), alpha);
+      for (int band = 0; band < bands.getBandCount(); band++)
+        picture.setRows(bands.getBandRow(band), bands.readBand(band));
+      return picture;
+    } catch (IOException | RuntimeException ex) {
+      if (picture != null)
+        picture.close();
+      throw ex;
+    } finally {
+      if (reader != null)
+        reader.dispose();
+      input.close();
+    }
+  }
+
+  /**
+   * Method to get the file name of the mapped picture
+   * @return the file name
+   */
+  public String getFileName() { return fileName; }
+
+  /**
+   * Method to get the title of the picture
+   * @return the title of the picture
+   */
+  public String getTitle() { return title; }
+
+  /**
+   * Method to set the title for the picture
+   * @param title the title to use for the picture
+   */
+  public void setTitle(String title) { this.title = title; }
+
+  /**
+   * Method to get the width of the picture in pixels
+   * @return the width of the picture in pixels
+   */
+  public int getWidth() { return width; }
+
+  /**
+   * Method to get the height of the picture in pixels
+   * @return the height of the picture in pixels
+   */
+  public int getHeight() { return height; }
+
+  /**
+   * Method to check if the alpha bits are used
+   * @return true if the picture has alpha
+   */
+  public boolean hasAlpha() { return hasAlpha; }
+
+  /**
+   * Method to get an image with a copy of the pixels
+   * @return the copy
+   */
+  public Image getImage() { return getBufferedImage(); }
+
+  /**
+   * Method to get a buffered image with a copy of all the pixels.
+   * Changing it doesn't change this picture.
+   * @return the copy
+   */
+  public BufferedImage getBufferedImage()
+  {
+    return getRows(0, height);
+  }
+
+  /**
+   * Method to get a buffered image with a copy of some rows
+   * @param startRow the first row to copy
+   * @param endRow the row to stop before
+   * @return the copy (TYPE_INT_ARGB if the alpha is used else TYPE_INT_RGB)
+   */
+  public BufferedImage getRows(int startRow, int endRow)
+  {
+    checkRows(startRow, endRow);
+    BufferedImage image = new BufferedImage(width, endRow - startRow, hasAlpha ?
+                                            BufferedImage.TYPE_INT_ARGB :
+                                            BufferedImage.TYPE_INT_RGB);
+    PixelRaster raster = PixelRaster.wrap(image);
+    int[] data = raster.getData();
+    for (int row = startRow; row < endRow; row++)
+    {
+      IntBuffer ints = rowBuffer(row);
+      ints.get(data, raster.getIndex(0, row - startRow), width);
+    }
+    return image;
+  }
+
+  /**
+   * Method to work on the packed int pixels of some rows.  The rows are
+   * copied into an array for the task and copied back when it is done,
+   * so they must fit in the heap.
+   * @param startRow the first row
+   * @param endRow the row to stop before
+   * @param task the code to run on the raster for the rows
+   */
+  public void processRaster(int startRow, int endRow, Consumer<PixelRaster> task)
+  {
+    BufferedImage rows = getRows(startRow, endRow);
+    task.accept(PixelRaster.wrap(rows));
+    setRows(startRow, rows);
+  }
+
+  /**
+   * Method to copy the pixels of a buffered image into some rows of
+   * this picture.  The image must be as wide as this picture.
+   * @param startRow the row to copy the top of the image to
+   * @param image the image to copy from
+   */
+  public void setRows(int startRow, BufferedImage image)
+  {
+    if (image.getWidth() != width)
+      throw new IllegalArgumentException("image is " + image.getWidth() +
+                                         " wide but the picture is " + width);
+    checkRows(startRow, startRow + image.getHeight());
+    PixelRaster raster = PixelRaster.wrap(PixelRaster.canWrap(image) ?
+                                          image : PixelRaster.toIntImage(image));
+    int[] data = raster.getData();
+    for (int row = 0; row < image.getHeight(); row++)
+    {
+      IntBuffer ints = rowBuffer(startRow + row);
+      ints.put(data, raster.getIndex(0, row), width);
+    }
+  }
+
+  /**
+   * Method to get an int view of one row, positioned at the start
+   * of the row.  Each call makes a new view, so threads don't share one.
+   * @param row the row
+   * @return the view
+   */
+  private IntBuffer rowBuffer(int row)
+  {
+    IntBuffer ints = chunkInts[row / rowsPerChunk].duplicate();
+    ints.position((row % rowsPerChunk) * width);
+    return ints;
+  }
+
+  /**
+   * Method to return the pixel value as an int for the given x and y location
+   * @param x the x coordinate of the pixel
+   * @param y the y coordinate of the pixel
+   * @return the pixel value as an integer (alpha, red, green, blue)
+   */
+  public int getBasicPixel(int x, int y)
+  {
+    checkLocation(x,y);
+    int value = chunkInts[y / rowsPerChunk].get((y % rowsPerChunk) * width + x);
+    if (!hasAlpha)
+      value |= 0xff000000;
+    return value;
+  }
+
+  /**
+   * Method to set the value of a pixel in the picture from an int
+   * @param x the x coordinate of the pixel
+   * @param y the y coordinate of the pixel
+   * @param rgb the new rgb value of the pixel (alpha, red, green, blue)
+   */
+  public void setBasicPixel(int x, int y, int rgb)
+  {
+    checkLocation(x,y);
+    chunkInts[y / rowsPerChunk].put((y % rowsPerChunk) * width + x, rgb);
+  }
+
+  /**
+   * Method to check that a location is in the picture
+   * @param x the x coordinate of the pixel
+   * @param y the y coordinate of the pixel
+   * @throws ArrayIndexOutOfBoundsException if the location is outside
+   */
+  private void checkLocation(int x, int y)
+  {
+    if (x < 0 || y < 0 || x >= width || y >= height)
+      throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+  }
+
+  /**
+   * Method to check that a range of rows is in the picture
+   * @param startRow the first row
+   * @param endRow the row to stop before
+   * @throws ArrayIndexOutOfBoundsException if the rows are outside
+   */
+  private void checkRows(int startRow, int endRow)
+  {
+    if (startRow < 0 || endRow > height || startRow > endRow)
+      throw new ArrayIndexOutOfBoundsException("Rows " + startRow + " to " + endRow +
+                                               " are outside the picture");
+  }
+
+  /**
+   * Method to get a pixel object for the given x and y location
+   * @param x  the x location of the pixel in the picture
+   * @param y  the y location of the pixel in the picture
+   * @return a Pixel object for this location
+   */
+  public Pixel getPixel(int x, int y)
+  {
+    return new Pixel(this,x,y);
+  }
+
+  /**
+   * Method to get a one-dimensional array of Pixels for this picture
+   * @return a one-dimensional array of Pixel objects starting with y=0
+   * to y=height-1 and x=0 to x=width-1.
+   */
+  public Pixel[] getPixels()
+  {
+    Pixel[] pixelArray = new Pixel[Math.multiplyExact(width, height)];
+    for (int row = 0; row < height; row++)
+      for (int col = 0; col < width; col++)
+        pixelArray[row * width + col] = new Pixel(this,col,row);
+    return pixelArray;
+  }
+
+  /**
+   * Method to get a two-dimensional array of Pixels for this picture
+   * @return a two-dimensional array of Pixel objects in row-major order.
+   */
+  public Pixel[][] getPixels2D()
+  {
+    Pixel[][] pixelArray = new Pixel[height][width];
+    for (int row = 0; row < height; row++)
+      for (int col = 0; col < width; col++)
+        pixelArray[row][col] = new Pixel(this,col,row);
+    return pixelArray;
+  }
+
+  /**
+   * Method to run the passed visitor on every pixel in a rectangle
+   * in row-major order, passing the same cursor each time
+   * @param startRow the first row to visit
+   * @param startCol the first column to visit
+   * @param endRow the row to stop before
+   * @param endCol the column to stop before
+   * @param visitor the code to run on each pixel
+   */
+  public void forEachPixel(int startRow, int startCol, int endRow, int endCol,
+                           PixelVisitor visitor)
+  {
+    PixelCursor cursor = new PixelCursor(this);
+    for (int row = startRow; row < endRow; row++)
+    {
+      for (int col = startCol; col < endCol; col++)
+      {
+        cursor.moveTo(col,row);
+        visitor.visit(cursor);
+      }
+    }
+  }
+
+  /**
+   * Method to change every pixel using lookup tables
+   * @param table the tables to use
+   */
+  public void applyLookupTable(ChannelLookupTable table)
+  {
+    int alphaBits = hasAlpha ? 0 : 0xff000000;
+    forEachRowInParallel((data, row) -> table.applyTo(data, 0, width, alphaBits));
+  }
+
+  /**
+   * Method to change every pixel with a function on its packed value
+   * (alpha, red, green, blue).  The function is called from several
+   * threads and must not keep state of its own.
+   * @param function the function to use
+   */
+  public void transform(IntUnaryOperator function)
+  {
+    int alphaBits = hasAlpha ? 0 : 0xff000000;
+    forEachRowInParallel((data, row) ->
+    {
+      for (int col = 0; col < width; col++)
+        data[col] = function.applyAsInt(data[col] | alphaBits);
+    });
+  }
+
+  /**
+   * Interface for code that changes one row of pixels in an array
+   */
+  private interface RowTask
+  {
+    void process(int[] data, int row);
+  }
+
+  /**
+   * Method to copy each row into an array, change it, and copy it back,
+   * using several threads on bands of rows
+   * @param task the code that changes a row
+   */
+  private void forEachRowInParallel(RowTask task)
+  {
+    TileExecutor.executeRows(0, 0, height, width,
+                             (startRow, startCol, endRow, endCol) ->
+    {
+      int[] data = new int[width];
+      for (int row = startRow; row < endRow; row++)
+      {
+        rowBuffer(row).get(data);
+        task.process(data, row);
+        rowBuffer(row).put(data);
+      }
+    });
+  }
+
+  /**
+   * Method to run a Picture filter on the whole picture one band of
+   * rows at a time.  Each band is copied into a Picture, passed to the
+   * filter, and copied back, so the filter sees rows 0 to bandHeight - 1
+   * of a picture as wide as this one.  Filters that work on each pixel
+   * by itself give the same result as on the whole picture.
+   * @param bandHeight the number of rows in each band
+   * @param filter the code to run on each band
+   */
+  public void forEachBand(int bandHeight, Consumer<Picture> filter)
+  {
+    if (bandHeight < 1)
+      throw new IllegalArgumentException("band height must be at least 1");
+    for (int row = 0; row < height; row += bandHeight)
+    {
+      int endRow = Math.min(height, row + bandHeight);
+      Picture band = new Picture(getRows(row, endRow));
+      filter.accept(band);
+      setRows(row, band.getBufferedImage());
+    }
+  }
+
+  /**
+   * Method to copy an image into the top left of this picture.  Parts
+   * outside this picture are cut off.
+   * @param image the image to use
+   */
+  public void load(Image image)
+  {
+    int rows = Math.min(height, image.getHeight(null));
+    BufferedImage band = getRows(0, rows);
+    Graphics2D graphics2d = band.createGraphics();
+    graphics2d.drawImage(image,0,0,null);
+    graphics2d.dispose();
+    setRows(0, band);
+  }
+
+  /**
+   * Method to switch this picture to another mapped picture file
+   * @param fileName the mapped picture file to open
+   * @return true if success else false
+   */
+  public boolean load(String fileName)
+  {
+    try {
+      MappedPicture other = open(fileName);
+      close();
+      this.fileName = other.fileName;
+      this.title = other.title;
+      this.channel = other.channel;
+      this.width = other.width;
+      this.height = other.height;
+      this.hasAlpha = other.hasAlpha;
+      this.rowsPerChunk = other.rowsPerChunk;
+      this.chunks = other.chunks;
+      this.chunkInts = other.chunkInts;
+      return true;
+    } catch (IOException ex) {
+      System.out.println("There was an error trying to open " + fileName);
+      return false;
+    }
+  }
+
+  /**
+   * Method to show a copy of the picture in a picture frame
+   */
+  public void show()
+  {
+    SimplePicture copy = new SimplePicture(getBufferedImage());
+    copy.setTitle(title);
+    copy.show();
+  }
+
+  /**
+   * Method to open a picture explorer on a copy of the picture
+   */
+  public void explore()
+  {
+    SimplePicture copy = new SimplePicture(getBufferedImage());
+    copy.setTitle(title);
+    copy.explore();
+  }
+
+  /**
+   * Method to write the picture to a jpg, png, or other picture file
+   * without throwing errors.  This makes a copy on the heap.
+   * @param fileName the name of the file to write the picture to
+   * @return true if success else false
+   */
+  public boolean write(String fileName)
+  {
+    return new SimplePicture(getBufferedImage()).write(fileName);
+  }
+
+  /**
+   * Method to make sure all changes have been written to the file
+   */
+  public void flush()
+  {
+    for (MappedByteBuffer chunk : chunks)
+      chunk.force();
+  }
+
+  /**
+   * Method to write any changes and close the file.  The picture
+   * can't be used after this.
+   * @throws IOException if the file can't be closed
+   */
+  public void close() throws IOException
+  {
+    if (channel == null)
+      return;
+    flush();
+    channel.close();
+    channel = null;
+    chunks = new MappedByteBuffer[0];
+    chunkInts = new IntBuffer[0];
+  }
+
+  /**
+   * Method to return a string with information about this picture
+   * @return a string with information about the picture
+   */
+  public String toString()
+  {
+    return "Mapped Picture, filename " + fileName +
+      " height " + height + " width " + width;
+  }
+
+}
@@ -5,6 +5,7 @@ import java.awt.image.BufferedImage;
 import java.text.*;
 import java.util.*;
 import java.util.List; // resolves problem with java.awt.List and java.util.List
+import java.util.function.IntUnaryOperator;
 
 /**
  * A class that represents a picture.  This class inherits from 
@@ -15,6 +16,44 @@ import java.util.List; // resolves problem with java.awt.List and java.util.List
  */
 public class Picture extends SimplePicture 
 {
+    ///////////////////// fields ////////////////////////////////////////
+
+    /* The point operations are kept here as tables and functions so 
+     * that PicturePipeline can chain them without repeating them.
+     */
+
+    /** the table for zeroBlue */
+    static final ChannelLookupTable ZERO_BLUE_TABLE = 
+        ChannelLookupTable.forChannels(null, null, null, blue -> 0);
+
+    /** the table for keepOnlyBlue */
+    static final ChannelLookupTable KEEP_ONLY_BLUE_TABLE = 
+        ChannelLookupTable.forChannels(null, red -> 0, green -> 0, null);
+
+    /** the table for negate */
+    static final ChannelLookupTable NEGATE_TABLE = ChannelLookupTable.negate();
+
+    /** the table for fixUnderwater (triple the red) */
+    static final ChannelLookupTable UNDERWATER_TABLE = 
+        ChannelLookupTable.scale(3, 1, 1);
+
+    /** the table for the tone steps of sepia, used on the gray value */
+    private static final ChannelLookupTable SEPIA_TONE_TABLE = 
+        ChannelLookupTable.forChannels(null,
+            gray -> gray < 60 ? gray*9/10 : gray,
+            gray -> gray < 60 ? gray*9/10 : gray,
+            gray -> gray < 60 ? gray*9/10 : (gray < 190 ? gray*8/10 : gray*9/10));
+
+    /** the function for sepia: make the pixel gray and then look up the tone for that gray */
+    static final IntUnaryOperator SEPIA = value ->
+        {
+            int average = (Pixel.getBlue(value) + Pixel.getRed(value) + Pixel.getGreen(value))/3;
+            return (value & 0xff000000) | 
+                (SEPIA_TONE_TABLE.lookupRed(average) << 16) | 
+                (SEPIA_TONE_TABLE.lookupGreen(average) << 8) | 
+                SEPIA_TONE_TABLE.lookupBlue(average);
+        };
+
     ///////////////////// constructors //////////////////////////////////
 
     /**
@@ -88,117 +127,89 @@ public class Picture extends SimplePicture
     /** Method to set the blue to 0 */
     public void zeroBlue()
     {
-        Pixel[][] pixels = this.getPixels2D();
-        for (Pixel[] rowArray : pixels)
-        {
-            for (Pixel pixelObj : rowArray)
-            {
-                pixelObj.setBlue(0);
-            }
-        }
+        this.transformInParallel(0, 0, getHeight(), getWidth(), value -> value & 0xffffff00);
     }
 
     public void keepOnlyBlue(int startRow, int startCol, int endRow, int endCol)
     {
-        Pixel[][] pixels = this.getPixels2D();
-        for (int row = startRow; row<endRow; row++)
-        {
-            for (int col = startCol; col < endCol; col++)
-            {
-                pixels[row][col].setGreen(0);
-                pixels[row][col].setRed(0);
-            }
-        }
+        // keep only the alpha and blue bits
+        this.transformInParallel(startRow, startCol, endRow, endCol, value -> value & 0xff0000ff);
     }
 
     public void negate(int startRow, int startCol, int endRow, int endCol)
     {
-        Pixel[][] pixels = this.getPixels2D();
-        for (int row = startRow; row<endRow; row++)
-        {
-            for (int col = startCol; col < endCol; col++)
-            {
-                pixels[row][col].setBlue(255-pixels[row][col].getBlue());
-                pixels[row][col].setRed(255-pixels[row][col].getRed());
-                pixels[row][col].setGreen(255-pixels[row][col].getGreen());
-            }
-        }
+        this.applyLookupTable(NEGATE_TABLE, startRow, startCol, endRow, endCol);
+    }
 
+    /**
+     * Method to change every pixel in the picture using a table for
+     * each channel.  The whole change takes one pass over the picture.
+     * @param table the tables to use
+     */
+    public void applyLookupTable(ChannelLookupTable table)
+    {
+        this.applyLookupTable(table, 0, 0, getHeight(), getWidth());
     }
 
-    public void posterizeCustomBinSize(int startRow, int startCol, int endRow, int endCol, int amountOfBins)
+    /**
+     * Method to change the pixels in a rectangle using a table for
+     * each channel.  Chain tables with ChannelLookupTable.andThen to 
+     * do several point changes in a single pass.
+     * @param table the tables to use
+     * @param startRow the first row to change
+     * @param startCol the first column to change
+     * @param endRow the row to stop before
+     * @param endCol the column to stop before
+     */
+    public void applyLookupTable(ChannelLookupTable table, 
+    int startRow, int startCol, int endRow, int endCol)
     {
-        Pixel[][] pixels = this.getPixels2D();
-        int binSize = 255/amountOfBins;
-        
-        for (int binNumber = 1; binNumber <= amountOfBins; binNumber++)
-        {
-            int lowerBinBound = binSize*(binNumber-1);
-            int higherBinBound = binSize*binNumber;
-            for (int row = startRow; row<endRow; row++)
+        this.checkRegion(startRow, startCol, endRow, endCol);
+        PixelRaster raster = this.getRaster();
+        int[] data = raster.getData();
+        int alphaBits = raster.hasAlpha() ? 0 : 0xff000000;
+        TileExecutor.execute(startRow, startCol, endRow, endCol,
+            (tileStartRow, tileStartCol, tileEndRow, tileEndCol) ->
             {
-                for (int col = startCol; col < endCol; col++)
-                {                 
+                for (int row = tileStartRow; row < tileEndRow; row++)
+                {
+                    int start = raster.getIndex(tileStartCol, row);
+                    table.applyTo(data, start, start + tileEndCol - tileStartCol, alphaBits);
+                }
+            });
+    }
 
-                    if (pixels[row][col].getRed()<higherBinBound && pixels[row][col].getRed()>lowerBinBound)
-                    {
-                        pixels[row][col].setRed((higherBinBound + lowerBinBound)/2);                    
-                    }
-                    
-                    if (pixels[row][col].getGreen()<higherBinBound && pixels[row][col].getGreen() > lowerBinBound)
-                    {
-                        pixels[row][col].setGreen((higherBinBound + lowerBinBound)/2);                       
-                    }
-                    
-                    if (pixels[row][col].getBlue()<higherBinBound && pixels[row][col].getBlue() > lowerBinBound)
-                    {
-                        pixels[row][col].setBlue((higherBinBound + lowerBinBound)/2);                      
-                    }
+    public void posterizeCustomBinSize(int startRow, int startCol, int endRow, int endCol, int amountOfBins)
+    {
+        // the bins are worked out once per value, then it is one pass
+        this.applyLookupTable(ChannelLookupTable.posterizeCustomBinSize(amountOfBins),
+            startRow, startCol, endRow, endCol);
+    }
 
-                }
-            }
-        }
+    /**
+     * Method to posterize a rectangle of the picture in one pass.  Each
+     * color value goes to the middle of its bin, where the bins split 
+     * 0 to 255 into nearly equal parts with no gaps between them.
+     * @param startRow the first row to change
+     * @param startCol the first column to change
+     * @param endRow the row to stop before
+     * @param endCol the column to stop before
+     * @param bins the number of bins per channel (1 to 256)
+     */
+    public void posterize(int startRow, int startCol, int endRow, int endCol, int bins)
+    {
+        this.applyLookupTable(ChannelLookupTable.posterize(bins),
+            startRow, startCol, endRow, endCol);
     }
 
     public void sepia(int startRow, int startCol, int endRow, int endCol)
     {        
-        Pixel[][] pixels = this.getPixels2D();
-        for (int row = startRow; row<endRow; row++)
-        {
-            for (int col = startCol; col < endCol; col++)
-            {
-                int average = (pixels[row][col].getBlue() + pixels[row][col].getRed() + pixels[row][col].getGreen())/3;
-                pixels[row][col].setBlue(average);
-                pixels[row][col].setRed(average);
-                pixels[row][col].setGreen(average);
-                if(pixels[row][col].getRed() < 60)
-                {
-                    pixels[row][col].setBlue(pixels[row][col].getBlue()*9/10);
-                    pixels[row][col].setRed(pixels[row][col].getRed()*9/10);
-                    pixels[row][col].setGreen(pixels[row][col].getGreen()*9/10);                    
-                }
-                else if (pixels[row][col].getRed() < 190)
-                {
-                    pixels[row][col].setBlue(pixels[row][col].getBlue()*8/10);
-                }
-                else
-                {
-                    pixels[row][col].setBlue(pixels[row][col].getBlue()*9/10);
-                }
-            }
-        }
+        this.transformInParallel(startRow, startCol, endRow, endCol, SEPIA);
     }
 
     public void fixUnderwater()
     {
-        Pixel[][] pixels = this.getPixels2D();
-        for (Pixel[] rowArray : pixels)
-        {
-            for (Pixel pixelObj : rowArray)
-            {                
-                pixelObj.setRed(pixelObj.getRed()*3);
-            }
-        }
+        this.applyLookupTable(UNDERWATER_TABLE);
     }
 
     /** Method that mirrors the picture around a 
@@ -206,91 +217,40 @@ public class Picture extends SimplePicture
      * from left to right */
     public void mirrorVertical()
     {
-        Pixel[][] pixels = this.getPixels2D();
-        Pixel leftPixel = null;
-        Pixel rightPixel = null;
-        int width = pixels[0].length;
-        for (int row = 0; row < pixels.length; row++)
-        {
-            for (int col = 0; col < width / 2; col++)
-            {
-                leftPixel = pixels[row][col];
-                rightPixel = pixels[row][width - 1 - col];
-                rightPixel.setColor(leftPixel.getColor());
-            }
-        } 
+        GeometricTransforms.mirrorColumns(this, this.getWidth() - 1, true);
     }
 
+    /** Method that mirrors the rows above mirrorLine
+     * onto the rows below it
+     * @param mirrorLine the first row below the mirror */
     public void mirrorHorizontalOverPoint(int mirrorLine)
     {
-        Pixel[][] pixels = this.getPixels2D();
-        Pixel topPixel = null;
-        Pixel bottomPixel = null;        
-        for (int row = 0; row < mirrorLine; row++)
-        {
-            for (int col = 0; col < pixels[0].length; col++)
-            {
-                topPixel = pixels[row][col];
-                int distanceFromMirror = mirrorLine-row;
-                bottomPixel = pixels[mirrorLine + distanceFromMirror-1][col];
-                bottomPixel.setColor(topPixel.getColor());
-            }
-        } 
+        GeometricTransforms.mirrorRows(this, 2 * mirrorLine - 1, true);
     }
 
+    /** Method that mirrors the picture around a 
+     * vertical mirror in the center of the picture
+     * from right to left */
     public void mirrorVerticalRightToLeft()
     {
-        Pixel[][] pixels = this.getPixels2D();
-        Pixel leftPixel = null;
-        Pixel rightPixel = null;
-        int width = pixels[0].length;
-        for (int row = 0; row < pixels.length; row++)
-        {
-            for (int col = 0; col < width / 2; col++)
-            {
-                leftPixel = pixels[row][col];
-                rightPixel = pixels[row][width - 1 - col];
-                leftPixel.setColor(leftPixel.getColor());
-            }
-        } 
+        GeometricTransforms.mirrorColumns(this, this.getWidth() - 1, false);
     }
 
+    /** Method that mirrors the square in the top left of the
+     * picture around a diagonal mirror from the top left corner,
+     * from the bottom left to the top right */
     public void mirrorDiagonal()
     {
-        Pixel[][] pixels = this.getPixels2D();
-        Pixel abovePixel = null;
-        Pixel belowPixel = null;
-        int width = pixels[0].length;
-        int height = pixels.length;
-        double slope = height/width;
-        int count = 0;
-        for (int y = 0; y < pixels.length; y++)
-        {
-            for (int x = 0; x < width; x++)
-            {               
-                int xLine = count;
-                int yLine = (int) (slope * count);
-                while (x < xLine && y < yLine)
-                {
-                    int verticalDistance = yLine-y;
-                    int horizontalDistance = xLine-x;
-                    abovePixel = pixels[y][x];
-                    belowPixel = pixels[yLine+verticalDistance][xLine+horizontalDistance];
-                    belowPixel.setColor(abovePixel.getColor());
-                }                
-                count++;
-            }
-        }
+        GeometricTransforms.mirrorDiagonal(this);
     }
 
     /** Mirror just part of a picture of a temple */
     public void mirrorTemple()
     {
         int mirrorPoint = 276;
-        Pixel leftPixel = null;
-        Pixel rightPixel = null;
+        PixelCursor leftPixel = new PixelCursor(this);
+        PixelCursor rightPixel = new PixelCursor(this);
         int count = 0;
-        Pixel[][] pixels = this.getPixels2D();
 
         // loop through the rows
         for (int row = 27; row < 97; row++)
@@ -299,64 +259,92 @@ public class Picture extends SimplePicture
             for (int col = 13; col < mirrorPoint; col++)
             {
 
-                leftPixel = pixels[row][col];      
-                rightPixel = pixels[row]                       
-                [mirrorPoint - col + mirrorPoint];
-                rightPixel.setColor(leftPixel.getColor());
+                leftPixel.moveTo(col, row);      
+                rightPixel.moveTo(mirrorPoint - col + mirrorPoint, row);
+                rightPixel.setColorFrom(leftPixel);
             }
         }
     }
 
+    /** Method that mirrors the columns left of mirrorLine
+     * onto the right of it
+     * @param mirrorLine the column the mirror goes through */
     public void mirrorVerticalOverPoint(int mirrorLine)
     {
-        int mirrorPoint = mirrorLine;
-        Pixel leftPixel = null;
-        Pixel rightPixel = null;
-        int count = 0;
-        Pixel[][] pixels = this.getPixels2D();
-        // loop through the rows
-        for (int row = 0; row < pixels.length; row++)
-        {
-            // loop until befroe mirrorPoint
-            for (int col = 0; col < mirrorPoint; col++)
-            {
+        GeometricTransforms.mirrorColumns(this, 2 * mirrorLine, true);
+    }
 
-                leftPixel = pixels[row][col];      
-                rightPixel = pixels[row]                       
-                [mirrorPoint - col + mirrorPoint];
-                rightPixel.setColor(leftPixel.getColor());
-            }
-        }
+    /** Method that flips the picture from left to right */
+    public void flipHorizontal()
+    {
+        GeometricTransforms.flipHorizontal(this);
+    }
+
+    /** Method that flips the picture from top to bottom */
+    public void flipVertical()
+    {
+        GeometricTransforms.flipVertical(this);
+    }
+
+    /** Method that turns the picture half way around */
+    public void rotate180()
+    {
+        GeometricTransforms.rotate180(this);
+    }
+
+    /** Method to make a copy of the picture turned a quarter
+     * turn clockwise
+     * @return the turned picture */
+    public Picture rotate90()
+    {
+        return GeometricTransforms.rotate90(this);
+    }
+
+    /** Method to make a copy of the picture turned a quarter
+     * turn counterclockwise
+     * @return the turned picture */
+    public Picture rotate270()
+    {
+        return GeometricTransforms.rotate270(this);
+    }
+
+    /** Method to make a copy of the picture with the rows
+     * turned into columns
+     * @return the transposed picture */
+    public Picture transpose()
+    {
+        return GeometricTransforms.transpose(this);
+    }
+
+    /** Method to make a copy of the picture turned clockwise by
+     * any angle, just big enough to hold it
+     * @param degrees the angle to turn it in degrees
+     * @return the turned picture */
+    public Picture rotate(double degrees)
+    {
+        return AffineWarp.rotate(this, degrees);
     }
 
     public void setTransparency(int alphaLevel)
     {
-        Pixel[][] pixels = this.getPixels2D();
-        for (int row = 0; row < pixels.length; row++)
-        {            
-            for (int col = 0; col < pixels[0].length; col++)
-            {  
-                pixels[row][col].setAlpha(alphaLevel);               
-            }
-        }
+        this.applyLookupTable(ChannelLookupTable.setAlpha(alphaLevel));
     }
 
     public void mirrorArms()
     {
         int mirrorPoint = 207;
-        Pixel topPixel = null;
-        Pixel bottomPixel = null;
+        PixelCursor topPixel = new PixelCursor(this);
+        PixelCursor bottomPixel = new PixelCursor(this);
         int count = 0;
-        Pixel[][] pixels = this.getPixels2D();
         // loop through the rows
         for (int row = 162; row < mirrorPoint; row++)
         {
             // loop from 13 to just before the mirror point
             for (int col = 96; col < 298; col++)
             {
-                topPixel = pixels[row][col];      
-                bottomPixel = pixels[mirrorPoint-row + mirrorPoint][col];
-                bottomPixel.setColor(topPixel.getColor());
+                topPixel.moveTo(col, row);      
+                bottomPixel.moveTo(col, mirrorPoint-row + mirrorPoint);
+                bottomPixel.setColorFrom(topPixel);
             }
         }
     }
@@ -371,65 +359,110 @@ public class Picture extends SimplePicture
     public void copy(Picture fromPic, 
     int startRow, int startCol)
     {
-        Pixel fromPixel = null;
-        Pixel toPixel = null;
-        Pixel[][] toPixels = this.getPixels2D();
-        Pixel[][] fromPixels = fromPic.getPixels2D();
-        for (int fromRow = 0, toRow = startRow; 
-        fromRow < fromPixels.length &&
-        toRow < toPixels.length; 
-        fromRow++, toRow++)
-        {
-            for (int fromCol = 0, toCol = startCol; 
-            fromCol < fromPixels[0].length &&
-            toCol < toPixels[0].length;  
-            fromCol++, toCol++)
-            {
-                fromPixel = fromPixels[fromRow][fromCol];
-                toPixel = toPixels[toRow][toCol];
-                toPixel.setColor(fromPixel.getColor());
-            }
-        }   
+        copy(fromPic, startRow, startCol, Blitter.AlphaMode.KEEP_DESTINATION);
+    }
+
+    /** copy from the passed fromPic to the
+     * specified startRow and startCol in the
+     * current picture, a row at a time
+     * @param fromPic the picture to copy from
+     * @param startRow the start row to copy to
+     * @param startCol the start col to copy to
+     * @param alphaMode whether to keep this picture's alpha or copy fromPic's
+     */
+    public void copy(Picture fromPic, int startRow, int startCol, Blitter.AlphaMode alphaMode)
+    {
+        Blitter.copy(fromPic, 0, 0, fromPic.getWidth(), fromPic.getHeight(),
+            this, startCol, startRow, alphaMode);
+    }
+
+    /** lay the passed overlay over the current picture with its top
+     * left at startRow and startCol, using the overlay's alpha
+     * @param overlay the picture to lay on top
+     * @param startRow the row to put the top of the overlay at
+     * @param startCol the column to put the left of the overlay at
+     */
+    public void overlay(Picture overlay, int startRow, int startCol)
+    {
+        overlay(overlay, startRow, startCol, Compositor.BlendMode.NORMAL, 255);
+    }
+
+    /** lay the passed overlay over the current picture with its top
+     * left at startRow and startCol, mixing the colors with a blend mode
+     * @param overlay the picture to lay on top
+     * @param startRow the row to put the top of the overlay at
+     * @param startCol the column to put the left of the overlay at
+     * @param mode how the colors mix
+     * @param opacity how much of the overlay to use (0-255)
+     */
+    public void overlay(Picture overlay, int startRow, int startCol,
+        Compositor.BlendMode mode, int opacity)
+    {
+        composite(overlay, startRow, startCol, Compositor.Rule.SRC_OVER, mode, opacity);
+    }
+
+    /** put the passed picture together with the current picture using a
+     * Porter-Duff rule, with its top left at startRow and startCol
+     * @param source the picture to put together with this one
+     * @param startRow the row to put the top of the source at
+     * @param startCol the column to put the left of the source at
+     * @param rule which parts of each picture are kept
+     * @param mode how the colors mix
+     * @param opacity how much of the source to use (0-255)
+     */
+    public void composite(Picture source, int startRow, int startCol,
+        Compositor.Rule rule, Compositor.BlendMode mode, int opacity)
+    {
+        Compositor.composite(source, 0, 0, source.getWidth(), source.getHeight(),
+            this, startCol, startRow, rule, mode, opacity);
     }
 
     public void setBackground(int red, int green, int blue)
     {
-        Pixel[][] pixels = this.getPixels2D();
-        for (Pixel[] asdf : pixels)
-        {
-            for (Pixel pixelObj : asdf)
+        this.transformInParallel(0, 0, getHeight(), getWidth(), backgroundFunction(red, green, blue));
+    }
+
+    /**
+     * Method to get the function setBackground uses on each pixel value
+     * @param red the red for the new background
+     * @param green the green for the new background
+     * @param blue the blue for the new background
+     * @return the function that replaces almost black pixels
+     */
+    static IntUnaryOperator backgroundFunction(int red, int green, int blue)
+    {
+        int background = Pixel.toBasicPixel(0, red, green, blue);
+        return value ->
             {
-                if (pixelObj.getRed()<=10 && pixelObj.getGreen() <= 10 && pixelObj.getBlue() <= 10)
+                if (ColorDistance.maxChannel(value, 0) <= 10)
                 {
-                    pixelObj.setRed(red);
-                    pixelObj.setGreen(green);
-                    pixelObj.setBlue(blue);
+                    return (value & 0xff000000) | background;
                 }
-            }
-        }
+                return value;
+            };
     }
 
     public void copyAndMixColors(Picture fromPic, int startRow, int startCol)
     {
-        Pixel fromPixel = null;
-        Pixel toPixel = null;
-        Pixel[][] toPixels = this.getPixels2D();
-        Pixel[][] fromPixels = fromPic.getPixels2D();
+        PixelCursor fromPixel = new PixelCursor(fromPic);
+        PixelCursor toPixel = new PixelCursor(this);
         for (int fromRow = 0, toRow = startRow; 
-        fromRow < fromPixels.length &&
-        toRow < toPixels.length; 
+        fromRow < fromPic.getHeight() &&
+        toRow < this.getHeight(); 
         fromRow++, toRow++)
         {
             for (int fromCol = 0, toCol = startCol; 
-            fromCol < fromPixels[0].length &&
-            toCol < toPixels[0].length;  
+            fromCol < fromPic.getWidth() &&
+            toCol < this.getWidth();  
             fromCol++, toCol++)
             {
-                fromPixel = fromPixels[fromRow][fromCol];
-                toPixel = toPixels[toRow][toCol];
-                toPixel.setRed((fromPixel.getRed()+toPixel.getRed())/2);
-                toPixel.setGreen((fromPixel.getGreen()+toPixel.getGreen())/2);
-                toPixel.setBlue((fromPixel.getBlue()+toPixel.getBlue())/2);
+                fromPixel.moveTo(fromCol, fromRow);
+                toPixel.moveTo(toCol, toRow);
+                int fromValue = fromPixel.getBasicPixel();
+                toPixel.transform(toValue -> (toValue & 0xff000000) |
+                    (((Pixel.getRed(fromValue)+Pixel.getRed(toValue))/2) << 16) |
+                    (((Pixel.getGreen(fromValue)+Pixel.getGreen(toValue))/2) << 8) |
+                    ((Pixel.getBlue(fromValue)+Pixel.getBlue(toValue))/2));
             }
         }   
     }
@@ -456,50 +489,107 @@ public class Picture extends SimplePicture
      */
     public void edgeDetection(int edgeDist)
     {
-        Pixel leftPixel = null;
-        Pixel rightPixel = null;
-        Pixel[][] pixels = this.getPixels2D();
-        Color rightColor = null;
-        for (int row = 0; row < pixels.length; row++)
-        {
-            for (int col = 0; 
-            col < pixels[0].length-1; col++)
+        // compare squared distances so no square root is needed
+        int limit = ColorDistance.squaredThreshold(edgeDist);
+        PixelRaster raster = this.getRaster();
+        int[] data = raster.getData();
+        int alphaBits = raster.hasAlpha() ? 0 : 0xff000000;
+
+        // each pixel only looks at the one to its right, which hasn't
+        // been changed yet, so whole rows can be done at the same time
+        TileExecutor.executeRows(0, 0, this.getHeight(), this.getWidth()-1, 
+            (startRow, startCol, endRow, endCol) ->
             {
-                leftPixel = pixels[row][col];
-                rightPixel = pixels[row][col+1];
-                rightColor = rightPixel.getColor();
-                if (leftPixel.colorDistance(rightColor) > 
-                edgeDist)
-                {
-                    leftPixel.setColor(Color.BLACK);
-                }
-                else
+                for (int row = startRow; row < endRow; row++)
                 {
-                    leftPixel.setColor(Color.WHITE);
+                    int index = raster.getIndex(startCol, row);
+                    int rowEnd = index + (endCol - startCol);
+                    for (; index < rowEnd; index++)
+                    {
+                        int left = data[index];
+                        int color = ColorDistance.squared(left, data[index+1]) > limit ?
+                            0x000000 : 0xffffff;
+                        data[index] = ((left | alphaBits) & 0xff000000) | color;
+                    }
                 }
-            }
-        }
+            });
+    }
+
+    /** Method to convolve the picture with a kernel, using the
+     * nearest edge pixel past the edges
+     * @param kernel the kernel to use
+     */
+    public void convolve(ConvolutionKernel kernel)
+    {
+        Convolution.convolve(this, kernel, Convolution.BorderMode.CLAMP);
+    }
+
+    /** Method to convolve the picture with a kernel
+     * @param kernel the kernel to use
+     * @param mode what to use for the pixels past the edges
+     */
+    public void convolve(ConvolutionKernel kernel, Convolution.BorderMode mode)
+    {
+        Convolution.convolve(this, kernel, mode);
+    }
+
+    /** Method to blur the picture with a Gaussian blur
+     * @param sigma how far the blur spreads, in pixels
+     */
+    public void gaussianBlur(double sigma)
+    {
+        convolve(ConvolutionKernel.gaussian(sigma));
+    }
+
+    /** Method to blur the picture by averaging the square around
+     * each pixel
+     * @param radius the number of pixels on each side to average
+     */
+    public void boxBlur(int radius)
+    {
+        convolve(ConvolutionKernel.box(radius));
+    }
+
+    /** Method to make the edges in the picture sharper */
+    public void sharpen()
+    {
+        convolve(ConvolutionKernel.sharpen());
     }
 
+    /** Method to change the picture to a gray map of its edges using
+     * the Sobel kernels.  Stronger edges are brighter.
+     */
+    public void sobelEdges()
+    {
+        Convolution.gradient(this, ConvolutionKernel.sobelX(), ConvolutionKernel.sobelY(),
+            4, Convolution.BorderMode.CLAMP);
+    }
+
+    /** Method to change the picture to a gray map of its edges using
+     * the Scharr kernels.  Stronger edges are brighter.
+     */
+    public void scharrEdges()
+    {
+        Convolution.gradient(this, ConvolutionKernel.scharrX(), ConvolutionKernel.scharrY(),
+            16, Convolution.BorderMode.CLAMP);
+    }
+
+    /** copy the part of sourcePicture from startSourceRow to just before
+     * endSourceRow and from startSourceCol to just before endSourceCol
+     * to startDestRow and startDestCol in the current picture
+     * @param sourcePicture the picture to copy from
+     * @param startSourceRow the first row to copy
+     * @param endSourceRow the row to stop before
+     * @param startSourceCol the first column to copy
+     * @param endSourceCol the column to stop before
+     * @param startDestRow the row to copy the first row to
+     * @param startDestCol the column to copy the first column to
+     */
     public void cropAndCopy(Picture sourcePicture, int startSourceRow, int endSourceRow, int startSourceCol, int endSourceCol, int startDestRow, int startDestCol)
     {
-        Pixel[][] source = sourcePicture.getPixels2D();
-        Pixel[][] current = this.getPixels2D();
-        int height = endSourceRow-startSourceRow;
-        int width = endSourceCol-startSourceCol;
-        for (int sourceRow = startSourceRow; sourceRow<endSourceRow; sourceRow++)
-        {
-            for (int sourceCol = startSourceCol; sourceCol < endSourceCol; sourceCol++)
-            {
-                for (int destRow = startDestRow; destRow < startDestRow + height; destRow++)
-                {
-                    for (int destCol = startDestCol; destCol < startDestCol + width; destCol++)
-                    {
-                        current[destRow][destCol].setColor(source[sourceRow][sourceCol].getColor());
-                    }
-                }
-            }
-        }
+        Blitter.copy(sourcePicture, startSourceCol, startSourceRow,
+            endSourceCol - startSourceCol, endSourceRow - startSourceRow,
+            this, startDestCol, startDestRow, Blitter.AlphaMode.KEEP_DESTINATION);
     }
 
     /* Main method for testing - each class in Java can have a main 
@@ -0,0 +1,298 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class that keeps recently decoded picture files in memory so loading
+ * the same file again doesn't decode it again.  SimplePicture.loadOrFail
+ * reads through the shared cache, so new Picture("flower1.jpg") only
+ * decodes flower1.jpg the first time.
+ *
+ * Files are found by their canonical path, and a file whose last
+ * modified time or length has changed is decoded again.  A picture
+ * loaded from the cache shares the cached pixels until it first
+ * changes them or hands them out, and only then makes its own copy
+ * (copy on write), so changing a picture never changes the cached
+ * pixels or other pictures loaded from the same file.  Copying is much
+ * quicker than decoding.  Code that loads many different files once
+ * each (like BatchProcessor) should skip the cache with decode.
+ *
+ * The cache holds at most maxBytes of pixels (4 bytes a pixel) and
+ * drops the least recently used files first.  Files bigger than that
+ * are never kept.  The size of the shared cache can be set with the
+ * picturelab.cache.bytes system property; 0 turns it off.
+ */
+public class PictureCache
+{
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the default most bytes of pixels kept (64 MB) */
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  /** the shared cache (made when first asked for) */
+  private static PictureCache shared;
+
+  /** the cached pictures by canonical path, least recently used first */
+  private LinkedHashMap<String,Entry> entries =
+    new LinkedHashMap<String,Entry>(16, 0.75f, true);
+
+  /** the most bytes of pixels to keep */
+  private long maxBytes;
+
+  /** the bytes of pixels kept now */
+  private long bytes;
+
+  /** the number of reads that were found in the cache */
+  private long hits;
+
+  /** the number of reads that had to decode */
+  private long misses;
+
+  /** the number of pictures dropped to make room */
+  private long evictions;
+
+  ////////////////////// constructors /////////////////////////////////
+
+  /**
+   * A constructor that takes the most bytes of pixels to keep
+   * @param maxBytes the size of the cache (0 to keep nothing)
+   */
+  public PictureCache(long maxBytes)
+  {
+    setMaxBytes(maxBytes);
+  }
+
+  ///////////////////////// methods //////////////////////////////
+
+  /**
+   * Method to get the cache SimplePicture uses
+   * @return the shared cache
+   */
+  public static synchronized PictureCache getShared()
+  {
+    if (shared == null)
+      shared = new PictureCache(Long.getLong("picturelab.cache.bytes", DEFAULT_MAX_BYTES));
+    return shared;
+  }
+
+  /**
+   * Method to read a picture file, from the cache if it is there.  The
+   * returned image is the caller's own, stored as packed ints
+   * (TYPE_INT_ARGB if the file has alpha, else TYPE_INT_RGB).
+   * @param file the file to read
+   * @return the pixels or null if the file isn't a picture ImageIO can decode
+   * @throws IOException if the file can't be read
+   */
+  public BufferedImage read(File file) throws IOException
+  {
+    BufferedImage image = readShared(file);
+    if (image != null && contains(image))
+      image = copy(image);
+    return image;
+  }
+
+  /**
+   * Method to read a picture file, from the cache if it is there,
+   * without copying it.  If contains says the returned image is in the
+   * cache it must not be changed; copy it first.
+   * @param file the file to read
+   * @return the pixels or null if the file isn't a picture ImageIO can decode
+   * @throws IOException if the file can't be read
+   */
+  public BufferedImage readShared(File file) throws IOException
+  {
+    String path = file.getCanonicalPath();
+    long lastModified = file.lastModified();
+    long length = file.length();
+
+    synchronized (this)
+    {
+      Entry entry = entries.get(path);
+      if (entry != null && entry.lastModified == lastModified && entry.length == length)
+      {
+        hits++;
+        return entry.image;
+      }
+      misses++;
+    }
+
+    // decode without holding the lock so other files can still be read
+    BufferedImage image = decode(file);
+    if (image == null)
+      return null;
+
+    long size = 4L * image.getWidth() * image.getHeight();
+    synchronized (this)
+    {
+      remove(path);
+      if (size <= maxBytes)
+      {
+        entries.put(path, new Entry(image, lastModified, length));
+        bytes += size;
+        trim();
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Method to check if an image is one of the cached ones (so it is
+   * shared and must not be changed)
+   * @param image the image from readShared
+   * @return true if the image is in the cache
+   */
+  public synchronized boolean contains(BufferedImage image)
+  {
+    for (Entry entry : entries.values())
+      if (entry.image == image)
+        return true;
+    return false;
+  }
+
+  /**
+   * Method to decode a picture file without using any cache
+   * @param file the file to read
+   * @return the pixels as packed ints or null if the file isn't a
+   * picture ImageIO can decode
+   * @throws IOException if the file can't be read
+   */
+  public static BufferedImage decode(File file) throws IOException
+  {
+    BufferedImage image = ImageIO.read(file);
+    if (image != null && !PixelRaster.canWrap(image))
+      image = PixelRaster.toIntImage(image);
+    return image;
+  }
+
+  /**
+   * Method to make a copy of a packed int image
+   * @param image the image to copy
+   * @return the copy
+   */
+  public static BufferedImage copy(BufferedImage image)
+  {
+    BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(),
+                                             image.getType());
+    PixelRaster from = PixelRaster.wrap(image);
+    PixelRaster to = PixelRaster.wrap(result);
+    for (int y = 0; y < image.getHeight(); y++)
+      System.arraycopy(from.getData(), from.getIndex(0, y),
+                       to.getData(), to.getIndex(0, y), image.getWidth());
+    return result;
+  }
+
+  /**
+   * Method to drop the least recently used pictures until the cache fits
+   */
+  private void trim()
+  {
+    Iterator<Map.Entry<String,Entry>> iterator = entries.entrySet().iterator();
+    while (bytes > maxBytes && iterator.hasNext())
+    {
+      bytes -= iterator.next().getValue().bytes();
+      iterator.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Method to drop one path from the cache
+   * @param path the canonical path
+   */
+  private void remove(String path)
+  {
+    Entry entry = entries.remove(path);
+    if (entry != null)
+      bytes -= entry.bytes();
+  }
+
+  /**
+   * Method to drop a file from the cache
+   * @param file the file
+   * @throws IOException if the canonical path can't be found
+   */
+  public synchronized void invalidate(File file) throws IOException
+  {
+    remove(file.getCanonicalPath());
+  }
+
+  /**
+   * Method to drop everything from the cache
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Method to set the most bytes of pixels to keep, dropping pictures
+   * if the cache is now too full
+   * @param maxBytes the size of the cache (0 to keep nothing)
+   */
+  public synchronized void setMaxBytes(long maxBytes)
+  {
+    if (maxBytes < 0)
+      throw new IllegalArgumentException("maxBytes can't be negative");
+    this.maxBytes = maxBytes;
+    trim();
+  }
+
+  /** @return the most bytes of pixels kept */
+  public synchronized long getMaxBytes() { return maxBytes; }
+
+  /** @return the bytes of pixels kept now */
+  public synchronized long getBytes() { return bytes; }
+
+  /** @return the number of pictures kept now */
+  public synchronized int size() { return entries.size(); }
+
+  /** @return the number of reads found in the cache */
+  public synchronized long getHits() { return hits; }
+
+  /** @return the number of reads that had to decode */
+  public synchronized long getMisses() { return misses; }
+
+  /** @return the number of pictures dropped to make room */
+  public synchronized long getEvictions() { return evictions; }
+
+  /**
+   * Method to return a string with the counts for this cache
+   * @return a string with information about the cache
+   */
+  public synchronized String toString()
+  {
+    return "Picture Cache, " + entries.size() + " pictures " + bytes + " of " +
+      maxBytes + " bytes, hits " + hits + " misses " + misses +
+      " evictions " + evictions;
+  }
+
+  /**
+   * Class for one cached file
+   */
+  private static class Entry
+  {
+    private BufferedImage image;
+    private long lastModified;
+    private long length;
+
+    Entry(BufferedImage image, long lastModified, long length)
+    {
+      this.image = image;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+    /** Method to get the bytes of pixels in the entry */
+    long bytes()
+    {
+      return 4L * image.getWidth() * image.getHeight();
+    }
+  }
+
+}
@@ -8,7 +8,8 @@ import javax.swing.border.*;
  * Displays a picture and lets you explore the picture by displaying the row, column, red,
  * green, and blue values of the pixel at the cursor when you click a mouse button or
  * press and hold a mouse button while moving the cursor.  It also lets you zoom in or
- * out.  You can also type in a row and column value to see the color at that location.
+ * out, from the zoom menu or by holding down the control key and turning the mouse
+ * wheel.  You can also type in a row and column value to see the color at that location.
  * 
  * Originally created for the Jython Environment for Students (JES). 
  * Modified to work with DrJava by Barbara Ericson
@@ -17,9 +18,17 @@ import javax.swing.border.*;
  * @author Keith McDermottt, gte047w@cc.gatech.edu
  * @author Barb Ericson ericson@cc.gatech.edu
  */
-public class PictureExplorer implements MouseMotionListener, ActionListener, MouseListener
+public class PictureExplorer implements MouseMotionListener, ActionListener, MouseListener,
+    MouseWheelListener
 {
 
+    /** the smallest zoom factor */
+    public static final double MIN_ZOOM = 0.01;
+    /** the biggest zoom factor */
+    public static final double MAX_ZOOM = 64;
+    /** the amount each click of the mouse wheel zooms by */
+    private static final double WHEEL_ZOOM_STEP = 1.1;
+
     // current indicies
     /** row index */
     private int rowIndex = 0; 
@@ -192,6 +201,7 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
         imageDisplay = new ImageDisplay(bimg);
         imageDisplay.addMouseMotionListener(this);
         imageDisplay.addMouseListener(this);
+        imageDisplay.addMouseWheelListener(this);
         imageDisplay.setToolTipText("Click a mouse button on a pixel to see the pixel information");
         scrollPane.setViewportView(imageDisplay);
         pictureFrame.getContentPane().add(scrollPane, BorderLayout.CENTER);
@@ -471,33 +481,64 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
     }
 
     /**
-     * Zooms in the on picture by scaling the image.  
-     * It is extremely memory intensive.
-     * @param factor the amount to zoom by
+     * Zooms in the on picture.  The image display only scales the part
+     * of the picture that is showing, so any zoom is quick.
+     * @param factor the amount to zoom by (between MIN_ZOOM and MAX_ZOOM)
      */
     public void zoom(double factor)
     {
         // save the current zoom factor
-        zoomFactor = factor;
-
-        // calculate the new width and height and get an image that size
-        int width = (int) (picture.getWidth()*zoomFactor);
-        int height = (int) (picture.getHeight()*zoomFactor);
-        BufferedImage bimg = picture.getBufferedImage();
+        zoomFactor = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, factor));
 
-        // set the scroll image icon to the new image
-        imageDisplay.setImage(bimg.getScaledInstance(width, height, Image.SCALE_DEFAULT));
-        imageDisplay.setCurrentX((int) (colIndex * zoomFactor));
-        imageDisplay.setCurrentY((int) (rowIndex * zoomFactor));
+        // tell the image display to draw at the new zoom
+        imageDisplay.setZoom(zoomFactor);
+        imageDisplay.setCurrentLocation((int) (colIndex * zoomFactor),
+                                        (int) (rowIndex * zoomFactor));
         imageDisplay.revalidate();
         checkScroll();  // check if need to reposition scroll
     }
 
+    /**
+     * Zooms in or out on the picture keeping the picture location under
+     * the given point of the image display in the same place on the screen
+     * @param factor the new zoom factor
+     * @param x the x of the point in the image display
+     * @param y the y of the point in the image display
+     */
+    private void zoomAround(double factor, int x, int y)
+    {
+        // find the point in the picture and where it shows in the viewport
+        JViewport viewport = scrollPane.getViewport();
+        Point viewPosition = viewport.getViewPosition();
+        double pictureX = x / zoomFactor;
+        double pictureY = y / zoomFactor;
+        int screenX = x - viewPosition.x;
+        int screenY = y - viewPosition.y;
+
+        // zoom and lay out the scroll pane for the new size
+        zoomFactor = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, factor));
+        imageDisplay.setZoom(zoomFactor);
+        imageDisplay.setCurrentLocation((int) (colIndex * zoomFactor),
+                                        (int) (rowIndex * zoomFactor));
+        scrollPane.validate();
+
+        // move the view so the picture point is back under the screen point
+        Dimension viewSize = imageDisplay.getPreferredSize();
+        Dimension extent = viewport.getExtentSize();
+        int viewX = (int) Math.round(pictureX * zoomFactor) - screenX;
+        int viewY = (int) Math.round(pictureY * zoomFactor) - screenY;
+        viewX = Math.max(0, Math.min(viewX, viewSize.width - extent.width));
+        viewY = Math.max(0, Math.min(viewY, viewSize.height - extent.height));
+        viewport.setViewPosition(new Point(viewX, viewY));
+        enableZoomItems();
+    }
+
     /**
      * Repaints the image on the scrollpane.  
      */
     public void repaint()
     {
+        imageDisplay.clearTiles();
         pictureFrame.repaint();
     }
 
@@ -586,8 +627,8 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
         }
 
         // notify the image display of the current x and y
-        imageDisplay.setCurrentX((int) (colIndex * zoomFactor));
-        imageDisplay.setCurrentY((int) (rowIndex * zoomFactor));
+        imageDisplay.setCurrentLocation((int) (colIndex * zoomFactor),
+                                        (int) (rowIndex * zoomFactor));
     }
 
     /**
@@ -633,6 +674,25 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
     public void mouseMoved(MouseEvent e)
     {}
 
+    /**
+     * Method called when the mouse wheel is turned.  With the control
+     * key down it zooms around the mouse, otherwise it scrolls.
+     * @param e the mouse wheel event
+     */
+    public void mouseWheelMoved(MouseWheelEvent e)
+    {
+        if (e.isControlDown())
+        {
+            double factor = zoomFactor * Math.pow(WHEEL_ZOOM_STEP, -e.getPreciseWheelRotation());
+            zoomAround(factor, e.getX(), e.getY());
+        }
+        else
+        {
+            // let the scroll pane scroll as if this listener wasn't here
+            scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(imageDisplay, e, scrollPane));
+        }
+    }
+
     /**
      * Method called when the mouse is clicked
      * @param e the mouse event
@@ -0,0 +1,430 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Class that records changes to a picture and does them later, all
+ * at once.  The methods have the same names and parameters as the
+ * Picture methods, but they only add a step and return the pipeline
+ * so calls can be chained:
+ *
+ * <pre>
+ *   new PicturePipeline(canvas)
+ *     .copy(tux, 0, 0)
+ *     .negate(0, 266, 314, 531)
+ *     .sepia(0, 1410, 304, 1679)
+ *     .write("MyCollage.jpg");
+ * </pre>
+ *
+ * Nothing happens to the picture until evaluate or write is called.
+ * Then steps that only change each pixel by itself (negate, sepia,
+ * posterize, and so on) and come one after another are fused: steps
+ * on the same rectangle are combined into one function (or one table),
+ * and the rest are done tile by tile so each tile is read from memory
+ * once for all of them.  Each step only touches its own rectangle.
+ * Other steps (copies and mirrors) run as they are, in order.
+ *
+ * Pictures passed to copy and copyAndMixColors are read when the
+ * pipeline runs, not when the step is recorded.
+ */
+public class PicturePipeline
+{
+
+  ////////////////////////// fields ///////////////////////////////////
+
+  /** the picture the steps change */
+  private Picture picture;
+
+  /** the steps that haven't been done yet */
+  private List<Step> steps = new ArrayList<Step>();
+
+  ////////////////////// constructors /////////////////////////////////
+
+  /**
+   * A constructor that takes the picture to change
+   * @param picture the picture the steps will change
+   */
+  public PicturePipeline(Picture picture)
+  {
+    this.picture = picture;
+  }
+
+  ///////////////////////// point steps //////////////////////////////
+
+  /**
+   * Method to add a step that sets the blue to 0
+   * @return this pipeline
+   */
+  public PicturePipeline zeroBlue()
+  {
+    return applyLookupTable(Picture.ZERO_BLUE_TABLE);
+  }
+
+  /**
+   * Method to add a step that keeps only the blue in a rectangle
+   * @return this pipeline
+   */
+  public PicturePipeline keepOnlyBlue(int startRow, int startCol, int endRow, int endCol)
+  {
+    return applyLookupTable(Picture.KEEP_ONLY_BLUE_TABLE, startRow, startCol, endRow, endCol);
+  }
+
+  /**
+   * Method to add a step that negates a rectangle
+   * @return this pipeline
+   */
+  public PicturePipeline negate(int startRow, int startCol, int endRow, int endCol)
+  {
+    return applyLookupTable(Picture.NEGATE_TABLE, startRow, startCol, endRow, endCol);
+  }
+
+  /**
+   * Method to add a step like Picture.posterizeCustomBinSize
+   * @return this pipeline
+   */
+  public PicturePipeline posterizeCustomBinSize(int startRow, int startCol, int endRow, int endCol,
+                                                int amountOfBins)
+  {
+    return applyLookupTable(ChannelLookupTable.posterizeCustomBinSize(amountOfBins),
+                            startRow, startCol, endRow, endCol);
+  }
+
+  /**
+   * Method to add a step like Picture.posterize
+   * @return this pipeline
+   */
+  public PicturePipeline posterize(int startRow, int startCol, int endRow, int endCol, int bins)
+  {
+    return applyLookupTable(ChannelLookupTable.posterize(bins), startRow, startCol, endRow, endCol);
+  }
+
+  /**
+   * Method to add a step that makes a rectangle sepia
+   * @return this pipeline
+   */
+  public PicturePipeline sepia(int startRow, int startCol, int endRow, int endCol)
+  {
+    return transform(Picture.SEPIA, startRow, startCol, endRow, endCol);
+  }
+
+  /**
+   * Method to add a step like Picture.fixUnderwater
+   * @return this pipeline
+   */
+  public PicturePipeline fixUnderwater()
+  {
+    return applyLookupTable(Picture.UNDERWATER_TABLE);
+  }
+
+  /**
+   * Method to add a step that sets the alpha of every pixel
+   * @param alphaLevel the new alpha
+   * @return this pipeline
+   */
+  public PicturePipeline setTransparency(int alphaLevel)
+  {
+    return applyLookupTable(ChannelLookupTable.setAlpha(alphaLevel));
+  }
+
+  /**
+   * Method to add a step like Picture.setBackground
+   * @return this pipeline
+   */
+  public PicturePipeline setBackground(int red, int green, int blue)
+  {
+    return transform(Picture.backgroundFunction(red, green, blue));
+  }
+
+  /**
+   * Method to add a step that uses a lookup table on every pixel
+   * @param table the tables to use
+   * @return this pipeline
+   */
+  public PicturePipeline applyLookupTable(ChannelLookupTable table)
+  {
+    return applyLookupTable(table, 0, 0, picture.getHeight(), picture.getWidth());
+  }
+
+  /**
+   * Method to add a step that uses a lookup table on a rectangle
+   * @param table the tables to use
+   * @return this pipeline
+   */
+  public PicturePipeline applyLookupTable(ChannelLookupTable table,
+                                          int startRow, int startCol, int endRow, int endCol)
+  {
+    steps.add(new Step(startRow, startCol, endRow, endCol, table, null));
+    return this;
+  }
+
+  /**
+   * Method to add a step that changes every pixel with a function on
+   * its packed value (alpha, red, green, blue)
+   * @param function the function to use
+   * @return this pipeline
+   */
+  public PicturePipeline transform(IntUnaryOperator function)
+  {
+    return transform(function, 0, 0, picture.getHeight(), picture.getWidth());
+  }
+
+  /**
+   * Method to add a step that changes a rectangle with a function on
+   * each packed pixel value.  The function is called from several
+   * threads and must not keep state of its own.
+   * @param function the function to use
+   * @return this pipeline
+   */
+  public PicturePipeline transform(IntUnaryOperator function,
+                                   int startRow, int startCol, int endRow, int endCol)
+  {
+    steps.add(new Step(startRow, startCol, endRow, endCol, function, null));
+    return this;
+  }
+
+  ///////////////////////// other steps //////////////////////////////
+
+  /**
+   * Method to add a step like Picture.mirrorVertical
+   * @return this pipeline
+   */
+  public PicturePipeline mirrorVertical()
+  {
+    return apply(thePicture -> thePicture.mirrorVertical());
+  }
+
+  /**
+   * Method to add a step like Picture.mirrorHorizontalOverPoint
+   * @return this pipeline
+   */
+  public PicturePipeline mirrorHorizontalOverPoint(int mirrorLine)
+  {
+    return apply(thePicture -> thePicture.mirrorHorizontalOverPoint(mirrorLine));
+  }
+
+  /**
+   * Method to add a step like Picture.mirrorVerticalOverPoint
+   * @return this pipeline
+   */
+  public PicturePipeline mirrorVerticalOverPoint(int mirrorLine)
+  {
+    return apply(thePicture -> thePicture.mirrorVerticalOverPoint(mirrorLine));
+  }
+
+  /**
+   * Method to add a step like Picture.copy
+   * @return this pipeline
+   */
+  public PicturePipeline copy(Picture fromPic, int startRow, int startCol)
+  {
+    return apply(thePicture -> thePicture.copy(fromPic, startRow, startCol));
+  }
+
+  /**
+   * Method to add a step like Picture.copyAndMixColors
+   * @return this pipeline
+   */
+  public PicturePipeline copyAndMixColors(Picture fromPic, int startRow, int startCol)
+  {
+    return apply(thePicture -> thePicture.copyAndMixColors(fromPic, startRow, startCol));
+  }
+
+  /**
+   * Method to add a step like Picture.edgeDetection
+   * @return this pipeline
+   */
+  public PicturePipeline edgeDetection(int edgeDist)
+  {
+    return apply(thePicture -> thePicture.edgeDetection(edgeDist));
+  }
+
+  /**
+   * Method to add a step that calls any code on the picture
+   * @param operation the code to run on the picture
+   * @return this pipeline
+   */
+  public PicturePipeline apply(Consumer<Picture> operation)
+  {
+    steps.add(new Step(0, 0, 0, 0, null, operation));
+    return this;
+  }
+
+  ///////////////////////// evaluation //////////////////////////////
+
+  /**
+   * Method to do all the recorded steps.  Afterwards the pipeline is
+   * empty and new steps can be added.
+   * @return the changed picture
+   */
+  public Picture evaluate()
+  {
+    List<Step> pointSteps = new ArrayList<Step>();
+    for (Step step : steps)
+    {
+      if (step.operation == null)
+      {
+        pointSteps.add(step);
+      }
+      else
+      {
+        // a step that isn't a point step ends the run of point steps
+        runPointSteps(pointSteps);
+        pointSteps.clear();
+        step.operation.accept(picture);
+      }
+    }
+    runPointSteps(pointSteps);
+    steps.clear();
+    return picture;
+  }
+
+  /**
+   * Method to do all the recorded steps and then write the picture
+   * @param fileName the name of the file to write to
+   * @return true if the write worked else false
+   */
+  public boolean write(String fileName)
+  {
+    return evaluate().write(fileName);
+  }
+
+  /**
+   * Method to get the picture the steps change
+   * @return the picture
+   */
+  public Picture getPicture()
+  {
+    return picture;
+  }
+
+  /**
+   * Method to get the number of steps that haven't been done yet
+   * @return the number of recorded steps
+   */
+  public int getStepCount()
+  {
+    return steps.size();
+  }
+
+  /**
+   * Method to do a run of point steps in one pass over the tiles they cover
+   * @param pointSteps the steps in the order they were added
+   */
+  private void runPointSteps(List<Step> pointSteps)
+  {
+    if (pointSteps.isEmpty())
+      return;
+
+    // combine neighbors that change the same rectangle, and find the
+    // rectangle that holds all of them
+    List<Step> fused = new ArrayList<Step>();
+    int startRow = Integer.MAX_VALUE;
+    int startCol = Integer.MAX_VALUE;
+    int endRow = Integer.MIN_VALUE;
+    int endCol = Integer.MIN_VALUE;
+    for (Step step : pointSteps)
+    {
+      picture.checkRegion(step.startRow, step.startCol, step.endRow, step.endCol);
+      if (step.isEmpty())
+        continue;
+
+      Step last = fused.isEmpty() ? null : fused.get(fused.size() - 1);
+      if (last != null && last.sameRegion(step))
+        fused.set(fused.size() - 1, last.andThen(step));
+      else
+        fused.add(step);
+
+      startRow = Math.min(startRow, step.startRow);
+      startCol = Math.min(startCol, step.startCol);
+      endRow = Math.max(endRow, step.endRow);
+      endCol = Math.max(endCol, step.endCol);
+    }
+    if (fused.isEmpty())
+      return;
+
+    PixelRaster raster = picture.getRaster();
+    int[] data = raster.getData();
+    int alphaBits = raster.hasAlpha() ? 0 : 0xff000000;
+
+    // do every step's part of a tile while the tile is still in the cache
+    TileExecutor.execute(startRow, startCol, endRow, endCol,
+                         (tileStartRow, tileStartCol, tileEndRow, tileEndCol) ->
+    {
+      for (Step step : fused)
+      {
+        int firstRow = Math.max(tileStartRow, step.startRow);
+        int lastRow = Math.min(tileEndRow, step.endRow);
+        int firstCol = Math.max(tileStartCol, step.startCol);
+        int lastCol = Math.min(tileEndCol, step.endCol);
+        for (int row = firstRow; row < lastRow && firstCol < lastCol; row++)
+        {
+          int start = raster.getIndex(firstCol, row);
+          int end = start + lastCol - firstCol;
+          if (step.table != null)
+            step.table.applyTo(data, start, end, alphaBits);
+          else
+            for (int index = start; index < end; index++)
+              data[index] = step.function.applyAsInt(data[index] | alphaBits);
+        }
+      }
+    });
+  }
+
+  /**
+   * Class for one recorded step.  A point step has a rectangle and a
+   * function (which may be a lookup table); any other step has an
+   * operation to run on the whole picture.
+   */
+  private static class Step
+  {
+    private int startRow;
+    private int startCol;
+    private int endRow;
+    private int endCol;
+    private IntUnaryOperator function;
+    private ChannelLookupTable table;
+    private Consumer<Picture> operation;
+
+    /**
+     * Constructor that takes the rectangle, the function, and the operation
+     */
+    Step(int startRow, int startCol, int endRow, int endCol,
+         IntUnaryOperator function, Consumer<Picture> operation)
+    {
+      this.startRow = startRow;
+      this.startCol = startCol;
+      this.endRow = endRow;
+      this.endCol = endCol;
+      this.function = function;
+      if (function instanceof ChannelLookupTable)
+        this.table = (ChannelLookupTable) function;
+      this.operation = operation;
+    }
+
+    /** Method to check if the step has no pixels to change */
+    boolean isEmpty()
+    {
+      return endRow <= startRow || endCol <= startCol;
+    }
+
+    /** Method to check if another step changes the same rectangle */
+    boolean sameRegion(Step other)
+    {
+      return startRow == other.startRow && startCol == other.startCol &&
+        endRow == other.endRow && endCol == other.endCol;
+    }
+
+    /** Method to make one step that does this step and then the next */
+    Step andThen(Step next)
+    {
+      IntUnaryOperator combined;
+      if (table != null && next.table != null)
+        combined = table.andThen(next.table);
+      else
+        combined = function.andThen(next.function);
+      return new Step(startRow, startCol, endRow, endCol, combined, null);
+    }
+  }
+
+}
@@ -0,0 +1,442 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class for a picture kept at many sizes, each half as wide and half as
+ * high as the one before (a mipmap).  Level 0 is the picture itself and
+ * the last level is 1 pixel wide or high.
+ * Levels are only made when they are first needed, by averaging 2 by 2
+ * blocks of the level above.
+ *
+ * A picture of any size is made from the smallest level that is still
+ * at least that big, so it never has to be shrunk by more than half,
+ * which is much faster than starting from the whole picture every time.
+ *
+ * A pyramid made with forFile is saved next to the picture file (with
+ * ".pyramid" added to the name) so later runs can read it instead of
+ * making it again.  The saved pyramid remembers the length and last
+ * modified time of the picture file and is made again if either
+ * changes.  Level 0 isn't saved; it is only decoded from the picture
+ * file if a picture that big is asked for.
+ */
+public class PicturePyramid
+{
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the number at the start of every saved pyramid ("PYR2", since the
+   * levels of pictures with alpha are averaged by alpha) */
+  public static final int MAGIC = 0x50595232;
+
+  /** the end added to a picture file name for its saved pyramid */
+  public static final String SUFFIX = ".pyramid";
+
+  /** the number of bytes before the pixels in a saved pyramid */
+  private static final int HEADER_SIZE = 36;
+
+  /** the number of bytes written or read at once */
+  private static final int BUFFER_BYTES = 1 << 16;
+
+  /** the picture file (null if the pyramid was made from a picture) */
+  private File sourceFile;
+
+  /** the width of level 0 */
+  private int width;
+
+  /** the height of level 0 */
+  private int height;
+
+  /** true if the alpha bits are used */
+  private boolean hasAlpha;
+
+  /** the levels made so far (null for the rest) */
+  private Picture[] levels;
+
+  /** why forFile couldn't save the pyramid (null if it was saved) */
+  private IOException saveError;
+
+  ////////////////////// constructors /////////////////////////////////
+
+  /**
+   * A constructor that makes a pyramid for a picture.  The picture is
+   * level 0 and is not copied, so don't change it while the pyramid
+   * is in use.
+   * @param picture the picture
+   */
+  public PicturePyramid(SimplePicture picture)
+  {
+    this(picture.getWidth(), picture.getHeight(), picture.getRaster().hasAlpha());
+    levels[0] = picture instanceof Picture ? (Picture) picture :
+      new Picture(picture.getBufferedImage());
+  }
+
+  /**
+   * A constructor that takes the size of level 0
+   * @param width the width of level 0
+   * @param height the height of level 0
+   * @param hasAlpha true if the alpha bits are used
+   */
+  private PicturePyramid(int width, int height, boolean hasAlpha)
+  {
+    this.width = width;
+    this.height = height;
+    this.hasAlpha = hasAlpha;
+    int count = 1;
+    while ((width >> count) >= 1 && (height >> count) >= 1)
+      count++;
+    levels = new Picture[count];
+  }
+
+  ///////////////////////// methods //////////////////////////////
+
+  /**
+   * Method to get the pyramid for a picture file.  The saved pyramid is
+   * read if it is there and up to date.  If not, the picture is decoded,
+   * every level is made, and the pyramid is saved for next time (if the
+   * folder can't be written to the pyramid still works, it just isn't
+   * saved, and getSaveError tells why).
+   * @param fileName the picture file, found like SimplePicture finds it
+   * @return the pyramid
+   * @throws IOException if the picture can't be read
+   */
+  public static PicturePyramid forFile(String fileName) throws IOException
+  {
+    File source = new File(fileName);
+    if (!source.canRead())
+    {
+      source = new File(FileChooser.getMediaPath(fileName));
+      if (!source.canRead())
+        throw new IOException(fileName +
+                              " could not be opened. Check that you specified the path");
+    }
+
+    PicturePyramid pyramid = read(source);
+    if (pyramid != null)
+      return pyramid;
+
+    pyramid = new PicturePyramid(decode(source));
+    pyramid.sourceFile = source;
+    try
+    {
+      pyramid.save();
+    }
+    catch (IOException ex)
+    {
+      pyramid.saveError = ex;
+    }
+    return pyramid;
+  }
+
+  /**
+   * Method to get why forFile couldn't save the pyramid it made
+   * @return the error, or null if the pyramid was saved or read from
+   * its file (or wasn't made with forFile)
+   */
+  public IOException getSaveError() { return saveError; }
+
+  /**
+   * Method to get the file the pyramid for a picture file is saved in
+   * @param source the picture file
+   * @return the pyramid file
+   */
+  public static File getPyramidFile(File source)
+  {
+    return new File(source.getPath() + SUFFIX);
+  }
+
+  /**
+   * Method to decode a picture file
+   * @param source the picture file
+   * @return the picture
+   * @throws IOException if the file can't be read or decoded
+   */
+  private static Picture decode(File source) throws IOException
+  {
+    BufferedImage image = PictureCache.getShared().read(source);
+    if (image == null)
+      throw new IOException(source + " could not be decoded");
+    return new Picture(image);
+  }
+
+  /** @return the number of levels */
+  public int getLevelCount() { return levels.length; }
+
+  /**
+   * Method to get the width of a level
+   * @param level the level (0 is the whole picture)
+   * @return the width in pixels
+   */
+  public int getLevelWidth(int level)
+  {
+    checkLevel(level);
+    return width >> level;
+  }
+
+  /**
+   * Method to get the height of a level
+   * @param level the level (0 is the whole picture)
+   * @return the height in pixels
+   */
+  public int getLevelHeight(int level)
+  {
+    checkLevel(level);
+    return height >> level;
+  }
+
+  /**
+   * Method to check that a level is in the pyramid
+   * @param level the level
+   */
+  private void checkLevel(int level)
+  {
+    if (level < 0 || level >= levels.length)
+      throw new IndexOutOfBoundsException("level " + level + " is not between 0 and " +
+                                          (levels.length - 1));
+  }
+
+  /**
+   * Method to get a level, making it (and the levels above it) if it
+   * hasn't been made yet.  The picture is shared by the pyramid, so
+   * don't change it; use getPicture for a copy.
+   * @param level the level (0 is the whole picture)
+   * @return the picture for the level
+   * @throws IOException if level 0 is needed and can't be decoded
+   */
+  public synchronized Picture getLevel(int level) throws IOException
+  {
+    checkLevel(level);
+    if (levels[level] == null)
+    {
+      if (level == 0)
+        levels[0] = decode(sourceFile);
+      else
+        levels[level] = Resampler.halve(getLevel(level - 1));
+    }
+    return levels[level];
+  }
+
+  /**
+   * Method to find the smallest level that is at least the given size
+   * @param width the width wanted
+   * @param height the height wanted
+   * @return the level (0 if the size is bigger than the whole picture)
+   */
+  public int findLevel(int width, int height)
+  {
+    int level = 0;
+    while (level + 1 < levels.length && getLevelWidth(level + 1) >= width &&
+           getLevelHeight(level + 1) >= height)
+      level++;
+    return level;
+  }
+
+  /**
+   * Method to make a picture of the given size from the smallest level
+   * that is at least that big
+   * @param width the new width (at least 1)
+   * @param height the new height (at least 1)
+   * @param filter the way to blend the pixels
+   * @return the new picture
+   * @throws IOException if level 0 is needed and can't be decoded
+   */
+  public Picture getPicture(int width, int height, Resampler.Filter filter)
+    throws IOException
+  {
+    Picture level = getLevel(findLevel(width, height));
+    if (level.getWidth() == width && level.getHeight() == height)
+      return new Picture(level);
+    return Resampler.resize(level, width, height, filter);
+  }
+
+  /**
+   * Method to make a picture of the given width with the same aspect
+   * ratio, the same size as SimplePicture.getPictureWithWidth makes
+   * @param width the new width
+   * @return the new picture
+   * @throws IOException if level 0 is needed and can't be decoded
+   */
+  public Picture getPictureWithWidth(int width) throws IOException
+  {
+    double factor = (double) width / this.width;
+    return getPicture((int) (this.width * factor), (int) (this.height * factor),
+                      Resampler.DEFAULT_FILTER);
+  }
+
+  /**
+   * Method to make a picture of the given height with the same aspect
+   * ratio, the same size as SimplePicture.getPictureWithHeight makes
+   * @param height the new height
+   * @return the new picture
+   * @throws IOException if level 0 is needed and can't be decoded
+   */
+  public Picture getPictureWithHeight(int height) throws IOException
+  {
+    double factor = (double) height / this.height;
+    return getPicture((int) (this.width * factor), (int) (this.height * factor),
+                      Resampler.DEFAULT_FILTER);
+  }
+
+  /**
+   * Method to save the pyramid next to its picture file, making every
+   * level first.  The file is written under another name and then
+   * renamed so no one ever reads half of it.
+   * @throws IOException if the file can't be written
+   * @throws IllegalStateException if the pyramid wasn't made with forFile
+   */
+  public void save() throws IOException
+  {
+    if (sourceFile == null)
+      throw new IllegalStateException("the pyramid has no picture file to save next to");
+    for (int level = 1; level < levels.length; level++)
+      getLevel(level);
+
+    Path target = getPyramidFile(sourceFile).toPath();
+    Path temp = Files.createTempFile(target.toAbsolutePath().getParent(),
+                                     target.getFileName().toString(), ".tmp");
+    try
+    {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE))
+      {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(width).putInt(height).putInt(hasAlpha ? 1 : 0);
+        buffer.putInt(levels.length).putLong(sourceFile.length());
+        buffer.putLong(sourceFile.lastModified());
+        for (int level = 1; level < levels.length; level++)
+        {
+          PixelRaster raster = levels[level].getRaster();
+          for (int y = 0; y < raster.getHeight(); y++)
+          {
+            int index = raster.getIndex(0, y);
+            int end = index + raster.getWidth();
+            while (index < end)
+            {
+              if (buffer.remaining() < 4)
+              {
+                buffer.flip();
+                writeFully(channel, buffer);
+                buffer.clear();
+              }
+              int count = Math.min(end - index, buffer.remaining() / 4);
+              buffer.asIntBuffer().put(raster.getData(), index, count);
+              buffer.position(buffer.position() + 4 * count);
+              index += count;
+            }
+          }
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+      }
+      try
+      {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException ex)
+      {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally
+    {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Method to write all of a buffer to a channel
+   * @param channel the channel
+   * @param buffer the buffer, ready to be written
+   * @throws IOException if the write fails
+   */
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+  {
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+  }
+
+  /**
+   * Method to read the saved pyramid for a picture file
+   * @param source the picture file
+   * @return the pyramid, or null if there isn't one or it is out of date
+   * @throws IOException if the saved pyramid can't be read
+   */
+  private static PicturePyramid read(File source) throws IOException
+  {
+    File file = getPyramidFile(source);
+    if (!file.isFile())
+      return null;
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+    {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      while (buffer.position() < HEADER_SIZE && channel.read(buffer) > 0)
+        ;
+      buffer.flip();
+      if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+        return null;
+      int width = buffer.getInt();
+      int height = buffer.getInt();
+      boolean hasAlpha = buffer.getInt() != 0;
+      int count = buffer.getInt();
+      long length = buffer.getLong();
+      long lastModified = buffer.getLong();
+      if (width < 1 || height < 1 || length != source.length() ||
+          lastModified != source.lastModified())
+        return null;
+
+      PicturePyramid pyramid = new PicturePyramid(width, height, hasAlpha);
+      if (count != pyramid.levels.length)
+        return null;
+      long bytes = HEADER_SIZE;
+      for (int level = 1; level < count; level++)
+        bytes += 4L * pyramid.getLevelWidth(level) * pyramid.getLevelHeight(level);
+      if (channel.size() != bytes)
+        return null;
+
+      pyramid.sourceFile = source;
+      for (int level = 1; level < count; level++)
+      {
+        int levelWidth = pyramid.getLevelWidth(level);
+        int levelHeight = pyramid.getLevelHeight(level);
+        BufferedImage image = new BufferedImage(levelWidth, levelHeight, hasAlpha ?
+                                                BufferedImage.TYPE_INT_ARGB :
+                                                BufferedImage.TYPE_INT_RGB);
+        PixelRaster raster = PixelRaster.wrap(image);
+        for (int y = 0; y < levelHeight; y++)
+        {
+          int index = raster.getIndex(0, y);
+          int end = index + levelWidth;
+          while (index < end)
+          {
+            if (buffer.remaining() < 4)
+            {
+              buffer.compact();
+              if (channel.read(buffer) < 0)
+                return null;
+              buffer.flip();
+              continue;
+            }
+            IntBuffer ints = buffer.asIntBuffer();
+            int n = Math.min(end - index, ints.remaining());
+            ints.get(raster.getData(), index, n);
+            buffer.position(buffer.position() + 4 * n);
+            index += n;
+          }
+        }
+        pyramid.levels[level] = new Picture(image);
+      }
+      return pyramid;
+    }
+  }
+
+}
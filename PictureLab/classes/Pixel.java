@@ -1,4 +1,5 @@
 import java.awt.Color;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Class that references a pixel in a picture. Pixel 
@@ -49,6 +50,18 @@ public class Pixel
   
   ///////////////////////// methods //////////////////////////////
   
+  /**
+   * Method to change the location of this pixel in the same picture.
+   * This lets a PixelCursor visit many pixels with one object.
+   * @param x the new x location of the pixel in the picture
+   * @param y the new y location of the pixel in the picture
+   */
+  protected void setLocation(int x, int y)
+  {
+    this.x = x;
+    this.y = y;
+  }
+  
   /**
    * Method to get the x location of this pixel.  
    * @return the x location of the pixel in the picture
@@ -266,8 +279,9 @@ public class Pixel
     // set the red value to the corrected value
     int red = correctValue(value);
     
-    // update the pixel value in the picture
-    updatePicture(getAlpha(), red, getGreen(), getBlue());
+    // replace just the red bits of the pixel value in the picture
+    int pixelValue = picture.getBasicPixel(x,y);
+    picture.setBasicPixel(x,y,(pixelValue & 0xff00ffff) | (red << 16));
   } 
   
   /**
@@ -279,8 +293,9 @@ public class Pixel
     // set the green value to the corrected value
     int green = correctValue(value);
     
-    // update the pixel value in the picture
-    updatePicture(getAlpha(), getRed(), green, getBlue());
+    // replace just the green bits of the pixel value in the picture
+    int pixelValue = picture.getBasicPixel(x,y);
+    picture.setBasicPixel(x,y,(pixelValue & 0xffff00ff) | (green << 8));
   } 
   
   /**
@@ -292,8 +307,9 @@ public class Pixel
     // set the blue value to the corrected value
     int blue = correctValue(value);
     
-    // update the pixel value in the picture
-    updatePicture(getAlpha(), getRed(), getGreen(), blue);
+    // replace just the blue bits of the pixel value in the picture
+    int pixelValue = picture.getBasicPixel(x,y);
+    picture.setBasicPixel(x,y,(pixelValue & 0xffffff00) | blue);
   } 
   
    /**
@@ -305,10 +321,99 @@ public class Pixel
     // make sure that the alpha is from 0 to 255 
     int alpha = correctValue(value);
     
-    // update the associated picture
-    updatePicture(alpha, getRed(), getGreen(), getBlue());
+    // replace just the alpha bits of the pixel value in the picture
+    int pixelValue = picture.getBasicPixel(x,y);
+    picture.setBasicPixel(x,y,(pixelValue & 0x00ffffff) | (alpha << 24));
   } 
   
+  /**
+   * Method to set the red, green, and blue values at once.  The
+   * pixel is read once and written once and the alpha is kept.
+   * @param red the new red value
+   * @param green the new green value
+   * @param blue the new blue value
+   */
+  public void setRedGreenBlue(int red, int green, int blue)
+  {
+    int pixelValue = picture.getBasicPixel(x,y);
+    picture.setBasicPixel(x,y,(pixelValue & 0xff000000) | 
+                          (correctValue(red) << 16) | 
+                          (correctValue(green) << 8) | 
+                          correctValue(blue));
+  }
+  
+  /**
+   * Method to set the red, green, and blue values of this pixel
+   * to the ones in another pixel.  The alpha of this pixel is kept.
+   * This does the same thing as setColor(otherPixel.getColor())
+   * without creating a Color object.
+   * @param otherPixel the pixel to copy the color from
+   */
+  public void setColorFrom(Pixel otherPixel)
+  {
+    int fromValue = otherPixel.getBasicPixel();
+    int pixelValue = picture.getBasicPixel(x,y);
+    picture.setBasicPixel(x,y,(pixelValue & 0xff000000) | (fromValue & 0x00ffffff));
+  }
+  
+  /**
+   * Method to get the value of this pixel as an int with alpha, 
+   * red, green, and blue each taking 8 bits from left to right
+   * @return the packed pixel value
+   */
+  public int getBasicPixel()
+  {
+    return picture.getBasicPixel(x,y);
+  }
+  
+  /**
+   * Method to set the value of this pixel from an int with alpha, 
+   * red, green, and blue each taking 8 bits from left to right
+   * @param value the new packed pixel value
+   */
+  public void setBasicPixel(int value)
+  {
+    picture.setBasicPixel(x,y,value);
+  }
+  
+  /**
+   * Method to change this pixel using a function from the old packed
+   * value (alpha, red, green, blue) to the new one.  The pixel is
+   * read once and written once no matter how many channels change.
+   * @param function the function to apply to the packed value
+   */
+  public void transform(IntUnaryOperator function)
+  {
+    int pixelValue = picture.getBasicPixel(x,y);
+    picture.setBasicPixel(x,y,function.applyAsInt(pixelValue));
+  }
+  
+  /**
+   * Method to get the alpha value from a pixel represented as an int
+   * @param value the color value as an int
+   * @return the amount of alpha
+   */
+  public static int getAlpha(int value)
+  {
+    int alpha = (value >> 24) & 0xff;
+    return alpha;
+  }
+  
+  /**
+   * Method to make a pixel value as an int from the passed alpha,
+   * red, green, and blue.  Values outside 0 to 255 are corrected.
+   * @param alpha the amount of alpha
+   * @param red the amount of red
+   * @param green the amount of green
+   * @param blue the amount of blue
+   * @return the packed pixel value
+   */
+  public static int toBasicPixel(int alpha, int red, int green, int blue)
+  {
+    return (correctValue(alpha) << 24) | (correctValue(red) << 16) | 
+      (correctValue(green) << 8) | correctValue(blue);
+  }
+  
   /**
   * Method to get the distance between this pixel's color and the passed color
   * @param testColor the color to compare to
@@ -316,13 +421,7 @@ public class Pixel
   */
  public double colorDistance(Color testColor)
  {
-   double redDistance = this.getRed() - testColor.getRed();
-   double greenDistance = this.getGreen() - testColor.getGreen();
-   double blueDistance = this.getBlue() - testColor.getBlue();
-   double distance = Math.sqrt(redDistance * redDistance + 
-                               greenDistance * greenDistance +
-                               blueDistance * blueDistance);
-   return distance;
+   return Math.sqrt(ColorDistance.squared(getBasicPixel(), testColor.getRGB()));
  }
  
  /**
@@ -333,13 +432,7 @@ public class Pixel
   */
  public static double colorDistance(Color color1,Color color2)
  {
-   double redDistance = color1.getRed() - color2.getRed();
-   double greenDistance = color1.getGreen() - color2.getGreen();
-   double blueDistance = color1.getBlue() - color2.getBlue();
-   double distance = Math.sqrt(redDistance * redDistance + 
-                               greenDistance * greenDistance +
-                               blueDistance * blueDistance);
-   return distance;
+   return Math.sqrt(ColorDistance.squared(color1.getRGB(), color2.getRGB()));
  }
  
  /**
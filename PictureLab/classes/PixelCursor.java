@@ -0,0 +1,34 @@
+/**
+ * Class for a pixel that can be moved to any location in its
+ * picture.  One cursor can be used to visit every pixel in a 
+ * picture instead of creating a new Pixel object for each one.
+ * All of the Pixel methods work on the cursor's current location.
+ */
+public class PixelCursor extends Pixel
+{
+  
+  ////////////////////// constructors /////////////////////////////////
+  
+  /**
+   * A constructor that takes the picture to move over.  The
+   * cursor starts at the top left pixel (0,0).
+   * @param picture the picture the cursor is in
+   */
+  public PixelCursor(DigitalPicture picture)
+  {
+    super(picture,0,0);
+  }
+  
+  ///////////////////////// methods //////////////////////////////
+  
+  /**
+   * Method to move the cursor to a new location
+   * @param x the x (column) location to move to
+   * @param y the y (row) location to move to
+   */
+  public void moveTo(int x, int y)
+  {
+    setLocation(x,y);
+  }
+  
+}
@@ -0,0 +1,236 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Class that gives direct access to the packed pixels of a picture.
+ * Each pixel is one int with alpha, red, green, and blue each taking
+ * 8 bits from left to right (the same layout getBasicPixel uses).
+ * The pixel at (x,y) is at index offset + y * scanlineStride + x in
+ * the data array.  Changing the array changes the picture.
+ *
+ * A raster can only be made for a buffered image of type
+ * TYPE_INT_ARGB or TYPE_INT_RGB.  For TYPE_INT_RGB the alpha bits
+ * in the array are ignored by the image, so getPixel reports
+ * them as 255 just like getRGB does.
+ */
+public class PixelRaster
+{
+
+  ////////////////////////// fields ///////////////////////////////////
+
+  /** the array that holds the packed pixels */
+  private int[] data;
+
+  /** the index of the pixel at (0,0) */
+  private int offset;
+
+  /** the distance in the array from one row to the next */
+  private int scanlineStride;
+
+  /** the width of the raster in pixels */
+  private int width;
+
+  /** the height of the raster in pixels */
+  private int height;
+
+  /** true if the alpha bits in the array are used */
+  private boolean hasAlpha;
+
+  ////////////////////// constructors /////////////////////////////////
+
+  /**
+   * A constructor that takes the array and the layout of the pixels in it
+   * @param data the array with the packed pixels
+   * @param offset the index of the pixel at (0,0)
+   * @param scanlineStride the distance from one row to the next
+   * @param width the width in pixels
+   * @param height the height in pixels
+   * @param hasAlpha true if the alpha bits are used
+   */
+  public PixelRaster(int[] data, int offset, int scanlineStride,
+                     int width, int height, boolean hasAlpha)
+  {
+    this.data = data;
+    this.offset = offset;
+    this.scanlineStride = scanlineStride;
+    this.width = width;
+    this.height = height;
+    this.hasAlpha = hasAlpha;
+  }
+
+  ///////////////////////// methods //////////////////////////////
+
+  /**
+   * Method to check if a raster can be made for the passed image
+   * without converting it
+   * @param image the buffered image to check
+   * @return true if the image stores its pixels as packed ints
+   */
+  public static boolean canWrap(BufferedImage image)
+  {
+    int type = image.getType();
+    return (type == BufferedImage.TYPE_INT_ARGB ||
+            type == BufferedImage.TYPE_INT_RGB) &&
+      image.getRaster().getDataBuffer() instanceof DataBufferInt &&
+      image.getSampleModel() instanceof SinglePixelPackedSampleModel;
+  }
+
+  /**
+   * Method to make a raster that shares the pixels of the passed image
+   * @param image a TYPE_INT_ARGB or TYPE_INT_RGB buffered image
+   * @return the raster for the image
+   * @throws IllegalArgumentException if the image doesn't use packed ints
+   */
+  public static PixelRaster wrap(BufferedImage image)
+  {
+    if (!canWrap(image))
+      throw new IllegalArgumentException("image type " + image.getType() +
+                                         " does not store packed int pixels");
+
+    SinglePixelPackedSampleModel sampleModel =
+      (SinglePixelPackedSampleModel) image.getSampleModel();
+    DataBufferInt dataBuffer =
+      (DataBufferInt) image.getRaster().getDataBuffer();
+
+    // the raster may be a child of a larger one so take its translation into account
+    int offset = dataBuffer.getOffset() +
+      sampleModel.getOffset(-image.getRaster().getSampleModelTranslateX(),
+                            -image.getRaster().getSampleModelTranslateY());
+
+    return new PixelRaster(dataBuffer.getData(), offset,
+                           sampleModel.getScanlineStride(),
+                           image.getWidth(), image.getHeight(),
+                           image.getType() == BufferedImage.TYPE_INT_ARGB);
+  }
+
+  /**
+   * Method to copy the passed image into a new buffered image that
+   * stores its pixels as packed ints.  Images with alpha become
+   * TYPE_INT_ARGB and the rest become TYPE_INT_RGB.
+   * @param image the image to convert
+   * @return a buffered image that can be wrapped
+   */
+  public static BufferedImage toIntImage(BufferedImage image)
+  {
+    int type = image.getColorModel().hasAlpha() ?
+      BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    BufferedImage result = new BufferedImage(image.getWidth(),
+                                             image.getHeight(), type);
+
+    // copy the pixels a row at a time
+    int width = image.getWidth();
+    int[] row = new int[width];
+    for (int y = 0; y < image.getHeight(); y++)
+    {
+      image.getRGB(0, y, width, 1, row, 0, width);
+      result.setRGB(0, y, width, 1, row, 0, width);
+    }
+    return result;
+  }
+
+  /**
+   * Method to copy the passed image into a new TYPE_INT_RGB buffered
+   * image, for writers that can't store alpha (JPEG, BMP).  Pixels that
+   * aren't fully opaque are stored as if they were laid over black, the
+   * same as Compositor does for a target without alpha.
+   * @param image the image to convert
+   * @return a buffered image without alpha
+   */
+  public static BufferedImage toOpaqueImage(BufferedImage image)
+  {
+    int width = image.getWidth();
+    BufferedImage result = new BufferedImage(width, image.getHeight(),
+                                             BufferedImage.TYPE_INT_RGB);
+    int[] row = new int[width];
+    for (int y = 0; y < image.getHeight(); y++)
+    {
+      image.getRGB(0, y, width, 1, row, 0, width);
+      for (int x = 0; x < width; x++)
+      {
+        int alpha = row[x] >>> 24;
+        if (alpha == 255)
+          continue;
+        int red = Compositor.div255(((row[x] >> 16) & 0xff) * alpha);
+        int green = Compositor.div255(((row[x] >> 8) & 0xff) * alpha);
+        int blue = Compositor.div255((row[x] & 0xff) * alpha);
+        row[x] = 0xff000000 | (red << 16) | (green << 8) | blue;
+      }
+      result.setRGB(0, y, width, 1, row, 0, width);
+    }
+    return result;
+  }
+
+  /**
+   * Method to get the array that holds the packed pixels
+   * @return the backing array (changes to it change the picture)
+   */
+  public int[] getData() { return data; }
+
+  /**
+   * Method to get the index of the pixel at (0,0)
+   * @return the offset of the first pixel in the array
+   */
+  public int getOffset() { return offset; }
+
+  /**
+   * Method to get the distance in the array from one row to the next
+   * @return the scanline stride
+   */
+  public int getScanlineStride() { return scanlineStride; }
+
+  /**
+   * Method to get the width of the raster
+   * @return the width in pixels
+   */
+  public int getWidth() { return width; }
+
+  /**
+   * Method to get the height of the raster
+   * @return the height in pixels
+   */
+  public int getHeight() { return height; }
+
+  /**
+   * Method to check if the alpha bits in the array are used
+   * @return true if the image keeps alpha
+   */
+  public boolean hasAlpha() { return hasAlpha; }
+
+  /**
+   * Method to get the index in the data array of a pixel
+   * @param x the x (column) location
+   * @param y the y (row) location
+   * @return the index of the pixel in the array
+   */
+  public int getIndex(int x, int y)
+  {
+    return offset + y * scanlineStride + x;
+  }
+
+  /**
+   * Method to get a pixel as an int (alpha, red, green, blue)
+   * @param x the x (column) location
+   * @param y the y (row) location
+   * @return the packed pixel value
+   */
+  public int getPixel(int x, int y)
+  {
+    int value = data[offset + y * scanlineStride + x];
+    if (!hasAlpha)
+      value = value | 0xff000000;
+    return value;
+  }
+
+  /**
+   * Method to set a pixel from an int (alpha, red, green, blue)
+   * @param x the x (column) location
+   * @param y the y (row) location
+   * @param value the new packed pixel value
+   */
+  public void setPixel(int x, int y, int value)
+  {
+    data[offset + y * scanlineStride + x] = value;
+  }
+
+}
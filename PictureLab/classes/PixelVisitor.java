@@ -0,0 +1,10 @@
+/**
+ * Interface for code that is run on each pixel of a picture
+ * by SimplePicture.forEachPixel.  The pixel that is passed in
+ * is reused for the next location, so keep the values you need
+ * rather than the pixel itself.
+ */
+public interface PixelVisitor 
+{
+  public void visit(Pixel pixel); // do something with the pixel at its current location
+}
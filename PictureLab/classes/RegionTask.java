@@ -0,0 +1,9 @@
+/**
+ * Interface for work that is done on a rectangle of a picture.
+ * The rectangle uses the same start and end rows and columns as
+ * the Picture methods: the start is included and the end is not.
+ */
+public interface RegionTask 
+{
+  public void process(int startRow, int startCol, int endRow, int endCol); // do the work for one rectangle
+}
@@ -0,0 +1,502 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * Class that makes a bigger or smaller copy of a picture.  The new
+ * picture is made in two passes over the packed pixels, first across
+ * (changing the width) and then down (changing the height).  For each
+ * new column or row the old pixels it uses and how much each one
+ * counts are worked out once, as whole numbers, and used for every
+ * row or column.  Rows are done at the same time on the TileExecutor
+ * pool.
+ *
+ * When making a picture smaller the filter is stretched to cover all
+ * the old pixels that fall in each new one, so fine detail is averaged
+ * instead of skipped.  For big reductions resizeProgressive first
+ * halves the picture by averaging 2 by 2 blocks, which is much faster,
+ * and then uses the filter for the last step.
+ *
+ * In pictures with alpha each color is weighted by its alpha too, so
+ * clear pixels don't leave a dark fringe around the edges of the parts
+ * that show.
+ */
+public class Resampler
+{
+
+  /**
+   * The ways to blend the old pixels into a new one
+   */
+  public enum Filter
+  {
+    /** use the nearest old pixel (blocky, fastest) */
+    NEAREST(0.5),
+    /** blend the nearest 2 by 2 pixels in straight lines */
+    BILINEAR(1),
+    /** blend the nearest 4 by 4 pixels on a smooth curve (Catmull-Rom) */
+    BICUBIC(2),
+    /** blend the nearest 6 by 6 pixels with the Lanczos window (sharpest) */
+    LANCZOS3(3);
+
+    /** how many old pixels the filter reaches on each side */
+    private double support;
+
+    Filter(double support)
+    {
+      this.support = support;
+    }
+
+    /**
+     * Method to get how much an old pixel counts
+     * @param x the distance from the new pixel's center in old pixels
+     * @return the weight
+     */
+    double weight(double x)
+    {
+      x = Math.abs(x);
+      switch (this)
+      {
+        case NEAREST:
+          return x < 0.5 ? 1 : 0;
+        case BILINEAR:
+          return x < 1 ? 1 - x : 0;
+        case BICUBIC:
+          // Catmull-Rom (a = -0.5)
+          if (x < 1)
+            return (1.5 * x - 2.5) * x * x + 1;
+          if (x < 2)
+            return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+          return 0;
+        default:
+          if (x == 0)
+            return 1;
+          if (x >= 3)
+            return 0;
+          double pix = Math.PI * x;
+          return 3 * Math.sin(pix) * Math.sin(pix / 3) / (pix * pix);
+      }
+    }
+  }
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the number of fraction bits in the weights */
+  private static final int WEIGHT_BITS = 14;
+
+  /** the filter used by SimplePicture.scale */
+  public static final Filter DEFAULT_FILTER = Filter.BILINEAR;
+
+  ////////////////////////// Methods //////////////////////////////////
+
+  /**
+   * Method to make a copy of a picture with a new size
+   * @param source the picture to copy
+   * @param width the new width (at least 1)
+   * @param height the new height (at least 1)
+   * @param filter the way to blend the pixels
+   * @return the new picture
+   */
+  public static Picture resize(SimplePicture source, int width, int height, Filter filter)
+  {
+    checkSize(width, height);
+    PixelRaster raster = source.getRaster();
+    int[] result = resize(raster.getData(), raster.getOffset(), raster.getScanlineStride(),
+                          raster.getWidth(), raster.getHeight(), raster.hasAlpha(),
+                          width, height, filter);
+    return toPicture(result, width, height, raster.hasAlpha());
+  }
+
+  /**
+   * Method to make a copy of a picture with a new size, halving it by
+   * averaging 2 by 2 blocks while it is still more than twice as big
+   * as the new size and then using the filter.  This is much faster for
+   * thumbnails and looks about the same.
+   * @param source the picture to copy
+   * @param width the new width (at least 1)
+   * @param height the new height (at least 1)
+   * @param filter the way to blend the pixels for the last step
+   * @return the new picture
+   */
+  public static Picture resizeProgressive(SimplePicture source, int width, int height,
+                                          Filter filter)
+  {
+    checkSize(width, height);
+    PixelRaster raster = source.getRaster();
+    int[] data = raster.getData();
+    int offset = raster.getOffset();
+    int stride = raster.getScanlineStride();
+    int currentWidth = raster.getWidth();
+    int currentHeight = raster.getHeight();
+    boolean hasAlpha = raster.hasAlpha();
+    while (currentWidth >= 2 * width && currentHeight >= 2 * height)
+    {
+      data = halve(data, offset, stride, currentWidth, currentHeight, hasAlpha);
+      currentWidth /= 2;
+      currentHeight /= 2;
+      offset = 0;
+      stride = currentWidth;
+    }
+    int[] result = resize(data, offset, stride, currentWidth, currentHeight, hasAlpha,
+                          width, height, filter);
+    return toPicture(result, width, height, hasAlpha);
+  }
+
+  /**
+   * Method to make a copy of a picture half as wide and half as high by
+   * averaging each 2 by 2 block.  An odd last row or column is left out.
+   * @param source the picture to halve (at least 2 by 2)
+   * @return the new picture
+   */
+  public static Picture halve(SimplePicture source)
+  {
+    checkSize(source.getWidth() / 2, source.getHeight() / 2);
+    PixelRaster raster = source.getRaster();
+    int[] result = halve(raster.getData(), raster.getOffset(), raster.getScanlineStride(),
+                         raster.getWidth(), raster.getHeight(), raster.hasAlpha());
+    return toPicture(result, raster.getWidth() / 2, raster.getHeight() / 2,
+                     raster.hasAlpha());
+  }
+
+  /**
+   * Method to check that a new size is at least 1 by 1
+   * @param width the new width
+   * @param height the new height
+   */
+  private static void checkSize(int width, int height)
+  {
+    if (width < 1 || height < 1)
+      throw new IllegalArgumentException("the new size must be at least 1 by 1 but was " +
+                                         width + " by " + height);
+  }
+
+  /**
+   * Method to make a picture from packed pixels with no gaps between rows
+   * @param data the pixels
+   * @param width the width
+   * @param height the height
+   * @param hasAlpha true if the alpha is used
+   * @return the picture
+   */
+  private static Picture toPicture(int[] data, int width, int height, boolean hasAlpha)
+  {
+    BufferedImage image = new BufferedImage(width, height, hasAlpha ?
+                                            BufferedImage.TYPE_INT_ARGB :
+                                            BufferedImage.TYPE_INT_RGB);
+    PixelRaster raster = PixelRaster.wrap(image);
+    for (int row = 0; row < height; row++)
+      System.arraycopy(data, row * width, raster.getData(), raster.getIndex(0, row), width);
+    return new Picture(image);
+  }
+
+  /**
+   * Method to resize packed pixels across and then down
+   * @return the new pixels, newWidth times newHeight long with no gaps
+   */
+  private static int[] resize(int[] data, int offset, int stride, int width, int height,
+                              boolean hasAlpha, int newWidth, int newHeight, Filter filter)
+  {
+    int alphaBits = hasAlpha ? 0 : 0xff000000;
+
+    // across: every old row, new columns
+    Weights across = new Weights(width, newWidth, filter);
+    int[] wide = new int[newWidth * height];
+    TileExecutor.executeRows(0, 0, height, newWidth, (startRow, startCol, endRow, endCol) ->
+    {
+      for (int row = startRow; row < endRow; row++)
+        across.apply(data, offset + row * stride, alphaBits, wide, row * newWidth);
+    });
+
+    // down: every new column, new rows
+    Weights down = new Weights(height, newHeight, filter);
+    int[] result = new int[newWidth * newHeight];
+    TileExecutor.executeRows(0, 0, newHeight, newWidth, (startRow, startCol, endRow, endCol) ->
+    {
+      for (int row = startRow; row < endRow; row++)
+        down.applyRow(wide, newWidth, row, result, row * newWidth, hasAlpha);
+    });
+    return result;
+  }
+
+  /**
+   * Method to halve packed pixels by averaging each 2 by 2 block.  An
+   * odd last row or column is left out.
+   * @return the new pixels with no gaps between rows
+   */
+  private static int[] halve(int[] data, int offset, int stride, int width, int height,
+                             boolean hasAlpha)
+  {
+    int newWidth = width / 2;
+    int newHeight = height / 2;
+    int alphaBits = hasAlpha ? 0 : 0xff000000;
+    int[] result = new int[newWidth * newHeight];
+    TileExecutor.executeRows(0, 0, newHeight, newWidth, (startRow, startCol, endRow, endCol) ->
+    {
+      for (int row = startRow; row < endRow; row++)
+      {
+        int top = offset + 2 * row * stride;
+        int bottom = top + stride;
+        int out = row * newWidth;
+        if (hasAlpha)
+        {
+          for (int col = 0; col < newWidth; col++)
+            result[out + col] = averageByAlpha(data[top + 2 * col], data[top + 2 * col + 1],
+                                               data[bottom + 2 * col],
+                                               data[bottom + 2 * col + 1]);
+          continue;
+        }
+        for (int col = 0; col < newWidth; col++)
+        {
+          int a = data[top + 2 * col] | alphaBits;
+          int b = data[top + 2 * col + 1] | alphaBits;
+          int c = data[bottom + 2 * col] | alphaBits;
+          int d = data[bottom + 2 * col + 1] | alphaBits;
+
+          // add the even and odd channels two at a time, rounding
+          long evens = (a & 0x00ff00ffL) + (b & 0x00ff00ffL) + (c & 0x00ff00ffL) +
+            (d & 0x00ff00ffL) + 0x00020002L;
+          long odds = ((a >>> 8) & 0x00ff00ffL) + ((b >>> 8) & 0x00ff00ffL) +
+            ((c >>> 8) & 0x00ff00ffL) + ((d >>> 8) & 0x00ff00ffL) + 0x00020002L;
+          result[out + col] = (int) (((evens >> 2) & 0x00ff00ffL) |
+                                     (((odds >> 2) & 0x00ff00ffL) << 8));
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Method to average four pixels that may not be opaque, weighting each
+   * color by its alpha so clear pixels don't darken the result
+   * @return the packed average
+   */
+  private static int averageByAlpha(int a, int b, int c, int d)
+  {
+    int alpha = 0;
+    int red = 0;
+    int green = 0;
+    int blue = 0;
+    for (int i = 0; i < 4; i++)
+    {
+      int value = i == 0 ? a : i == 1 ? b : i == 2 ? c : d;
+      int weight = value >>> 24;
+      alpha += weight;
+      red += weight * ((value >> 16) & 0xff);
+      green += weight * ((value >> 8) & 0xff);
+      blue += weight * (value & 0xff);
+    }
+    if (alpha == 0)
+      return 0;
+    return ((alpha + 2) >> 2) << 24 |
+      ((red + alpha / 2) / alpha) << 16 |
+      ((green + alpha / 2) / alpha) << 8 |
+      ((blue + alpha / 2) / alpha);
+  }
+
+  /**
+   * Class for the old pixels each new column (or row) uses and how
+   * much each one counts, as whole numbers out of 1 << WEIGHT_BITS
+   */
+  private static class Weights
+  {
+    /** the first old pixel for each new one */
+    private int[] first;
+
+    /** the number of old pixels for each new one */
+    private int[] count;
+
+    /** the weights, taps in a row for each new pixel */
+    private int[] weights;
+
+    /** the most old pixels any new one uses */
+    private int taps;
+
+    /**
+     * Constructor that works out the weights
+     * @param oldSize the old width or height
+     * @param newSize the new width or height
+     * @param filter the filter
+     */
+    Weights(int oldSize, int newSize, Filter filter)
+    {
+      double scale = (double) oldSize / newSize;
+      double stretch = Math.max(1, scale);
+      double support = filter.support * stretch;
+      taps = filter == Filter.NEAREST ? 1 : (int) Math.ceil(2 * support) + 1;
+      first = new int[newSize];
+      count = new int[newSize];
+      weights = new int[newSize * taps];
+      double[] real = new double[taps];
+
+      for (int i = 0; i < newSize; i++)
+      {
+        double center = (i + 0.5) * scale;
+        if (filter == Filter.NEAREST)
+        {
+          first[i] = Math.min(oldSize - 1, (int) center);
+          count[i] = 1;
+          weights[i] = 1 << WEIGHT_BITS;
+          continue;
+        }
+        int left = Math.max(0, (int) Math.floor(center - support));
+        int right = Math.min(oldSize, (int) Math.ceil(center + support));
+        int n = Math.min(taps, right - left);
+        double total = 0;
+        for (int j = 0; j < n; j++)
+        {
+          real[j] = filter.weight((left + j + 0.5 - center) / stretch);
+          total += real[j];
+        }
+
+        // drop the zero weights at the ends so fewer pixels are read
+        int start = 0;
+        while (start < n - 1 && real[start] == 0)
+          start++;
+        int end = n;
+        while (end > start + 1 && real[end - 1] == 0)
+          end--;
+
+        first[i] = left + start;
+        count[i] = end - start;
+        for (int j = start; j < end; j++)
+          weights[i * taps + j - start] =
+            (int) Math.round(real[j] / total * (1 << WEIGHT_BITS));
+      }
+    }
+
+    /**
+     * Method to make one row of new pixels from one row of old ones
+     * @param from the old pixels
+     * @param fromStart the index of the first old pixel
+     * @param alphaBits bits to OR into each old pixel (0 if the alpha is
+     * used, which weights the colors by their alpha)
+     * @param to the array for the new pixels
+     * @param toStart the index for the first new pixel
+     */
+    void apply(int[] from, int fromStart, int alphaBits, int[] to, int toStart)
+    {
+      if (alphaBits == 0)
+      {
+        for (int i = 0; i < first.length; i++)
+          to[toStart + i] = weightedPixel(from, fromStart + first[i], 1, i);
+        return;
+      }
+      for (int i = 0; i < first.length; i++)
+      {
+        int alpha = 0;
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        int index = fromStart + first[i];
+        int weightIndex = i * taps;
+        for (int j = 0; j < count[i]; j++)
+        {
+          int value = from[index] | alphaBits;
+          int weight = weights[weightIndex + j];
+          alpha += weight * (value >>> 24);
+          red += weight * ((value >> 16) & 0xff);
+          green += weight * ((value >> 8) & 0xff);
+          blue += weight * (value & 0xff);
+          index++;
+        }
+        to[toStart + i] = pack(alpha, red, green, blue);
+      }
+    }
+
+    /**
+     * Method to make one row of new pixels from the rows of old ones
+     * above and below it, going across the row so memory is read in order
+     * @param from the old pixels, width wide with no gaps
+     * @param width the width of a row
+     * @param row the new row to make
+     * @param to the array for the new pixels
+     * @param toStart the index for the first new pixel
+     * @param hasAlpha true if the colors should be weighted by their alpha
+     */
+    void applyRow(int[] from, int width, int row, int[] to, int toStart, boolean hasAlpha)
+    {
+      int start = first[row] * width;
+      if (hasAlpha)
+      {
+        for (int col = 0; col < width; col++)
+          to[toStart + col] = weightedPixel(from, start + col, width, row);
+        return;
+      }
+      int weightIndex = row * taps;
+      int n = count[row];
+      for (int col = 0; col < width; col++)
+      {
+        int alpha = 0;
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        int index = start + col;
+        for (int j = 0; j < n; j++)
+        {
+          int value = from[index];
+          int weight = weights[weightIndex + j];
+          alpha += weight * (value >>> 24);
+          red += weight * ((value >> 16) & 0xff);
+          green += weight * ((value >> 8) & 0xff);
+          blue += weight * (value & 0xff);
+          index += width;
+        }
+        to[toStart + col] = pack(alpha, red, green, blue);
+      }
+    }
+
+    /**
+     * Method to make one new pixel from old pixels that may not be
+     * opaque.  Each color is weighted by its alpha as well, and the total
+     * alpha weight is divided back out, so clear pixels (whose colors
+     * don't show) don't pull the colors next to them toward their own.
+     * @param from the old pixels
+     * @param index the index of the first old pixel used
+     * @param step the distance from one old pixel used to the next
+     * @param i the new pixel (which weights to use)
+     * @return the packed pixel value
+     */
+    private int weightedPixel(int[] from, int index, int step, int i)
+    {
+      long alpha = 0;
+      long red = 0;
+      long green = 0;
+      long blue = 0;
+      int weightIndex = i * taps;
+      for (int j = 0; j < count[i]; j++)
+      {
+        int value = from[index];
+        long weight = (long) weights[weightIndex + j] * (value >>> 24);
+        alpha += weight;
+        red += weight * ((value >> 16) & 0xff);
+        green += weight * ((value >> 8) & 0xff);
+        blue += weight * (value & 0xff);
+        index += step;
+      }
+      if (alpha <= 0)
+        return 0;
+      int half = 1 << (WEIGHT_BITS - 1);
+      return (clamp((int) ((alpha + half) >> WEIGHT_BITS)) << 24) |
+        (clamp((int) ((red + alpha / 2) / alpha)) << 16) |
+        (clamp((int) ((green + alpha / 2) / alpha)) << 8) |
+        clamp((int) ((blue + alpha / 2) / alpha));
+    }
+
+    /**
+     * Method to round the weighted sums and pack them into a pixel value
+     * @return the packed pixel value
+     */
+    private static int pack(int alpha, int red, int green, int blue)
+    {
+      int half = 1 << (WEIGHT_BITS - 1);
+      return (clamp((alpha + half) >> WEIGHT_BITS) << 24) |
+        (clamp((red + half) >> WEIGHT_BITS) << 16) |
+        (clamp((green + half) >> WEIGHT_BITS) << 8) |
+        clamp((blue + half) >> WEIGHT_BITS);
+    }
+
+    /** Method to keep a channel value in 0 to 255 */
+    private static int clamp(int value)
+    {
+      return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+  }
+
+}
@@ -4,6 +4,8 @@ import javax.swing.ImageIcon;
 import java.awt.*;
 import java.io.*;
 import java.awt.geom.*;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 
 /**
  * A class that represents a simple picture.  A simple picture may have
@@ -34,6 +36,12 @@ public class SimplePicture implements DigitalPicture
    */
   private BufferedImage bufferedImage;
   
+  /**
+   * packed int view of the buffered image pixels (null if the
+   * buffered image doesn't store its pixels as packed ints)
+   */
+  private PixelRaster raster;
+  
   /**
    * frame used to display the simple picture
    */
@@ -44,6 +52,29 @@ public class SimplePicture implements DigitalPicture
    */
   private String extension;
   
+  /**
+   * the sizes of this picture made so far (null until first needed,
+   * and dropped again whenever this picture changes its pixels)
+   */
+  private PicturePyramid pyramid;
+  
+  /**
+   * true if the buffered image is the one in the picture cache, so it
+   * has to be copied before the pixels are changed or handed out
+   */
+  private boolean sharedPixels;
+  
+  /**
+   * true once the pixels have been handed out (getRaster, getImage, and
+   * so on), since they can then change without this picture knowing
+   */
+  private boolean pixelsHandedOut;
+  
+  /**
+   * the file the pixels were loaded from (null once they are changed)
+   */
+  private File pixelFile;
+  
  
  /////////////////////// Constructors /////////////////////////
  
@@ -81,7 +112,7 @@ public class SimplePicture implements DigitalPicture
   */
  public  SimplePicture(int width, int height)
  {
-   bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+   useBufferedImage(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
    title = "None";
    fileName = "None";
    extension = "jpg";
@@ -117,8 +148,8 @@ public class SimplePicture implements DigitalPicture
       this.title = new String(copyPicture.title);
    if (copyPicture.bufferedImage != null)
    {
-     this.bufferedImage = new BufferedImage(copyPicture.getWidth(),
-                                            copyPicture.getHeight(), BufferedImage.TYPE_INT_RGB);
+     this.useBufferedImage(new BufferedImage(copyPicture.getWidth(),
+                                             copyPicture.getHeight(), BufferedImage.TYPE_INT_RGB));
      this.copyPicture(copyPicture);
    }
  }
@@ -129,7 +160,7 @@ public class SimplePicture implements DigitalPicture
   */
  public SimplePicture(BufferedImage image)
  {
-   this.bufferedImage = image;
+   this.useBufferedImage(image);
    title = "None";
    fileName = "None";
    extension = "jpg";
@@ -151,27 +182,9 @@ public class SimplePicture implements DigitalPicture
   */
  public void copyPicture(SimplePicture sourcePicture)
  {
-   Pixel sourcePixel = null;
-   Pixel targetPixel = null;
-   
-   // loop through the columns
-   for (int sourceX = 0, targetX = 0; 
-        sourceX < sourcePicture.getWidth() &&
-        targetX < this.getWidth();
-        sourceX++, targetX++)
-   {
-     // loop through the rows
-     for (int sourceY = 0, targetY = 0; 
-          sourceY < sourcePicture.getHeight() && 
-          targetY < this.getHeight();
-          sourceY++, targetY++)
-     {
-       sourcePixel = sourcePicture.getPixel(sourceX,sourceY);
-       targetPixel = this.getPixel(targetX,targetY);
-       targetPixel.setColor(sourcePixel.getColor());
-     }
-   }
-   
+   // copy a row at a time, keeping this picture's alpha
+   Blitter.copy(sourcePicture, 0, 0, sourcePicture.getWidth(), sourcePicture.getHeight(),
+                this, 0, 0, Blitter.AlphaMode.KEEP_DESTINATION);
  }
  
  /**
@@ -180,15 +193,7 @@ public class SimplePicture implements DigitalPicture
   */
  public void setAllPixelsToAColor(Color color)
  {
-   // loop through all x
-   for (int x = 0; x < this.getWidth(); x++)
-   {
-     // loop through all y
-     for (int y = 0; y < this.getHeight(); y++)
-     {
-       getPixel(x,y).setColor(color);
-     }
-   }
+   forEachPixel(pixel -> pixel.setColor(color));
  }
  
  /**
@@ -197,15 +202,105 @@ public class SimplePicture implements DigitalPicture
   */
  public BufferedImage getBufferedImage() 
  {
+    handingOutPixels();
     return bufferedImage;
  }
  
+ /**
+  * Method to set the buffered image that holds the pixels and 
+  * wrap it in a raster if it stores its pixels as packed ints
+  * @param image the new buffered image
+  */
+ private void useBufferedImage(BufferedImage image)
+ {
+   bufferedImage = image;
+   sharedPixels = false;
+   pixelsHandedOut = false;
+   pixelFile = null;
+   pyramid = null;
+   if (PixelRaster.canWrap(image))
+     raster = PixelRaster.wrap(image);
+   else
+     raster = null;
+ }
+ 
+ /**
+  * Method to make this picture its own copy of the pixels if they are
+  * still shared with the picture cache
+  */
+ private void unsharePixels()
+ {
+   if (sharedPixels)
+   {
+     bufferedImage = PictureCache.copy(bufferedImage);
+     raster = PixelRaster.wrap(bufferedImage);
+     sharedPixels = false;
+   }
+ }
+ 
+ /**
+  * Method to call before the pixels are handed out.  The pyramid is
+  * kept, but from now on it is checked against the pixels before it
+  * is used.
+  */
+ private void handingOutPixels()
+ {
+   unsharePixels();
+   pixelsHandedOut = true;
+ }
+ 
+ /**
+  * Method to call before this picture changes its pixels.  It drops
+  * the pyramid, since it no longer matches.
+  */
+ private void changingPixels()
+ {
+   unsharePixels();
+   pyramid = null;
+   pixelFile = null;
+ }
+ 
+ /**
+  * Method to get a raster that gives direct access to the packed
+  * int pixels of this picture.  If the buffered image doesn't store
+  * its pixels as packed ints it is first converted to one that does
+  * (TYPE_INT_ARGB if it has alpha, else TYPE_INT_RGB).
+  * @return the raster for the pixels in this picture
+  */
+ public PixelRaster getRaster()
+ {
+   if (raster == null)
+     useBufferedImage(PixelRaster.toIntImage(bufferedImage));
+   handingOutPixels();
+   return raster;
+ }
+ 
+ /**
+  * Method to work straight on the packed int pixels of some rows.  The
+  * raster passed to the task is a view of this picture's own pixels,
+  * with its row 0 at startRow, so changes show up right away.
+  * @param startRow the first row
+  * @param endRow the row to stop before
+  * @param task the code to run on the raster for the rows
+  */
+ public void processRaster(int startRow, int endRow, Consumer<PixelRaster> task)
+ {
+   if (startRow < 0 || endRow > getHeight() || startRow > endRow)
+     throw new IndexOutOfBoundsException("rows " + startRow + " to " + endRow +
+                                         " are not in the picture");
+   PixelRaster all = getRaster();
+   task.accept(new PixelRaster(all.getData(), all.getIndex(0, startRow),
+                               all.getScanlineStride(), all.getWidth(),
+                               endRow - startRow, all.hasAlpha()));
+ }
+ 
  /**
   * Method to get a graphics object for this picture to use to draw on
   * @return a graphics object to use for drawing
   */
  public Graphics getGraphics()
  {
+   handingOutPixels();
    return bufferedImage.getGraphics();
  }
  
@@ -215,6 +310,7 @@ public class SimplePicture implements DigitalPicture
   */
  public Graphics2D createGraphics()
  {
+   handingOutPixels();
    return bufferedImage.createGraphics();
  }
  
@@ -286,6 +382,7 @@ public class SimplePicture implements DigitalPicture
   */
  public Image getImage()
  {
+   handingOutPixels();
    return bufferedImage;
  }
  
@@ -297,7 +394,13 @@ public class SimplePicture implements DigitalPicture
   */
  public int getBasicPixel(int x, int y)
  {
-    return bufferedImage.getRGB(x,y);
+   // read straight from the array if we can
+   if (raster != null)
+   {
+     checkLocation(x,y);
+     return raster.getPixel(x,y);
+   }
+   return bufferedImage.getRGB(x,y);
  }
     
  /** 
@@ -308,7 +411,30 @@ public class SimplePicture implements DigitalPicture
   */     
  public void setBasicPixel(int x, int y, int rgb)
  {
-   bufferedImage.setRGB(x,y,rgb);
+   changingPixels();
+   
+   // write straight to the array if we can
+   if (raster != null)
+   {
+     checkLocation(x,y);
+     raster.setPixel(x,y,rgb);
+   }
+   else
+     bufferedImage.setRGB(x,y,rgb);
+ }
+ 
+ /**
+  * Method to check that a location is in the picture.  The raster
+  * doesn't check this itself, since a bad x would just land on 
+  * another row.
+  * @param x the x coordinate of the pixel
+  * @param y the y coordinate of the pixel
+  * @throws ArrayIndexOutOfBoundsException if the location is outside
+  */
+ private void checkLocation(int x, int y)
+ {
+   if (x < 0 || y < 0 || x >= raster.getWidth() || y >= raster.getHeight())
+     throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
  }
   
  /**
@@ -361,6 +487,133 @@ public class SimplePicture implements DigitalPicture
    return pixelArray;
  }
  
+ /**
+  * Method to run the passed visitor on every pixel in this picture
+  * in row-major order.  No Pixel objects are created; the visitor
+  * is passed the same cursor each time, moved to the next location.
+  * @param visitor the code to run on each pixel
+  */
+ public void forEachPixel(PixelVisitor visitor)
+ {
+   forEachPixel(0,0,getHeight(),getWidth(),visitor);
+ }
+ 
+ /**
+  * Method to run the passed visitor on every pixel in a rectangle of
+  * this picture in row-major order.  The visitor is passed the same
+  * cursor each time, moved to the next location.
+  * @param startRow the first row to visit
+  * @param startCol the first column to visit
+  * @param endRow the row to stop before
+  * @param endCol the column to stop before
+  * @param visitor the code to run on each pixel
+  */
+ public void forEachPixel(int startRow, int startCol, int endRow, int endCol,
+                          PixelVisitor visitor)
+ {
+   PixelCursor cursor = new PixelCursor(this);
+   
+   // loop through the rows from top to bottom
+   for (int row = startRow; row < endRow; row++)
+   {
+     for (int col = startCol; col < endCol; col++)
+     {
+       cursor.moveTo(col,row);
+       visitor.visit(cursor);
+     }
+   }
+ }
+ 
+ /**
+  * Method to run the passed visitor on every pixel in this picture
+  * using several threads at once.  See forEachPixelInParallel with
+  * a rectangle for what the visitor may do.
+  * @param visitor the code to run on each pixel
+  */
+ public void forEachPixelInParallel(PixelVisitor visitor)
+ {
+   forEachPixelInParallel(0,0,getHeight(),getWidth(),visitor);
+ }
+ 
+ /**
+  * Method to run the passed visitor on every pixel in a rectangle of
+  * this picture using several threads at once.  The rectangle is 
+  * split into tiles by TileExecutor and each tile gets its own cursor.
+  * The visitor is called from many threads, so it should only change
+  * the pixel it is passed and not keep any state of its own.  Then 
+  * the result is the same as with forEachPixel.
+  * @param startRow the first row to visit
+  * @param startCol the first column to visit
+  * @param endRow the row to stop before
+  * @param endCol the column to stop before
+  * @param visitor the code to run on each pixel
+  */
+ public void forEachPixelInParallel(int startRow, int startCol, int endRow, int endCol,
+                                    PixelVisitor visitor)
+ {
+   // make sure every pixel has its own int so threads can't collide
+   getRaster();
+   
+   TileExecutor.execute(startRow,startCol,endRow,endCol,
+                        (tileStartRow,tileStartCol,tileEndRow,tileEndCol) ->
+     forEachPixel(tileStartRow,tileStartCol,tileEndRow,tileEndCol,visitor));
+ }
+ 
+ /**
+  * Method to change every pixel in a rectangle of this picture using a
+  * function from the old packed value (alpha, red, green, blue) to the
+  * new one.  This works straight on the raster in parallel tiles and 
+  * doesn't use Pixel objects at all.  The function is called from many
+  * threads, so it should not keep any state of its own.
+  * @param startRow the first row to change
+  * @param startCol the first column to change
+  * @param endRow the row to stop before
+  * @param endCol the column to stop before
+  * @param function the function to apply to each packed value
+  */
+ public void transformInParallel(int startRow, int startCol, int endRow, int endCol,
+                                 IntUnaryOperator function)
+ {
+   checkRegion(startRow,startCol,endRow,endCol);
+   PixelRaster pixels = getRaster();
+   int[] data = pixels.getData();
+   
+   // pictures without alpha report it as 255, like getBasicPixel does
+   int alphaBits = pixels.hasAlpha() ? 0 : 0xff000000;
+   
+   TileExecutor.execute(startRow,startCol,endRow,endCol,
+                        (tileStartRow,tileStartCol,tileEndRow,tileEndCol) ->
+   {
+     for (int row = tileStartRow; row < tileEndRow; row++)
+     {
+       int index = pixels.getIndex(tileStartCol,row);
+       int rowEnd = index + (tileEndCol - tileStartCol);
+       for (; index < rowEnd; index++)
+         data[index] = function.applyAsInt(data[index] | alphaBits);
+     }
+   });
+ }
+ 
+ /**
+  * Method to check that a rectangle is inside this picture.  The 
+  * start row and column are included and the end ones are not, so
+  * an empty rectangle (start equal to end) is fine.
+  * @param startRow the first row
+  * @param startCol the first column
+  * @param endRow the row to stop before
+  * @param endCol the column to stop before
+  * @throws ArrayIndexOutOfBoundsException if the rectangle sticks out
+  */
+ protected void checkRegion(int startRow, int startCol, int endRow, int endCol)
+ {
+   if (startRow < 0 || startCol < 0 || 
+       (endRow > startRow && endRow > getHeight()) ||
+       (endCol > startCol && endCol > getWidth()))
+     throw new ArrayIndexOutOfBoundsException("Rectangle from row " + startRow +
+                                              " col " + startCol + " to row " + endRow +
+                                              " col " + endCol + " is outside the picture");
+ }
+ 
  /**
   * Method to load the buffered image with the passed image
   * @param image  the image to use
@@ -368,7 +621,7 @@ public class SimplePicture implements DigitalPicture
  public void load(Image image)
  {
    // get a graphics context to use to draw on the buffered image
-   Graphics2D graphics2d = bufferedImage.createGraphics();
+   Graphics2D graphics2d = createGraphics();
    
    // draw the image on the buffered image starting at 0,0
    graphics2d.drawImage(image,0,0,null);
@@ -439,11 +692,25 @@ public class SimplePicture implements DigitalPicture
  }
  
  /**
-  * Method to load the picture from the passed file name
+  * Method to load the picture from the passed file name, through the
+  * picture cache
   * @param fileName the file name to use to load the picture from
   * @throws IOException if the picture isn't found
   */
  public void loadOrFail(String fileName) throws IOException
+ {
+   loadOrFail(fileName, true);
+ }
+ 
+ /**
+  * Method to load the picture from the passed file name.  Skip the
+  * cache when loading lots of files that are each only used once, so
+  * they don't fill the cache and push out the ones that are reused.
+  * @param fileName the file name to use to load the picture from
+  * @param useCache true to go through the picture cache
+  * @throws IOException if the picture isn't found
+  */
+ public void loadOrFail(String fileName, boolean useCache) throws IOException
  {
     // set the current picture's file name
    this.fileName = fileName;
@@ -470,7 +737,14 @@ public class SimplePicture implements DigitalPicture
      }
    }
    
-   bufferedImage = ImageIO.read(file);
+   // pixels from the cache are shared until they are changed
+   PictureCache cache = PictureCache.getShared();
+   BufferedImage image = useCache ? cache.readShared(file) : PictureCache.decode(file);
+   if (image == null)
+     throw new IOException(this.fileName + " could not be decoded");
+   useBufferedImage(image);
+   sharedPixels = useCache && cache.contains(image);
+   pixelFile = file;
  }
 
 
@@ -488,8 +762,8 @@ public class SimplePicture implements DigitalPicture
 
      } catch (Exception ex) {
          System.out.println("There was an error trying to open " + fileName);
-         bufferedImage = new BufferedImage(600,200,
-                                           BufferedImage.TYPE_INT_RGB);
+         useBufferedImage(new BufferedImage(600,200,
+                                            BufferedImage.TYPE_INT_RGB));
          addMessage("Couldn't load " + fileName,5,100);
          return false;
      }
@@ -516,7 +790,7 @@ public class SimplePicture implements DigitalPicture
  public void addMessage(String message, int xPos, int yPos)
  {
    // get a graphics context to use to draw on the buffered image
-   Graphics2D graphics2d = bufferedImage.createGraphics();
+   Graphics2D graphics2d = createGraphics();
    
    // set the color to white
    graphics2d.setPaint(Color.white);
@@ -549,22 +823,22 @@ public class SimplePicture implements DigitalPicture
    */
   public Picture scale(double rFactor, double cFactor)
   {
-    // set up the scale tranform
-    AffineTransform scaleTransform = new AffineTransform();
-    scaleTransform.scale(cFactor,rFactor);
-    
-    // create a new picture object that is the right size
-    Picture result = new Picture((int) (getHeight() * rFactor),
-                                 (int) (getWidth() * cFactor));
-    
-    // get the graphics 2d object to draw on the result
-    Graphics graphics = result.getGraphics();
-    Graphics2D g2 = (Graphics2D) graphics;
-    
-    // draw the current image onto the result image scaled
-    g2.drawImage(this.getImage(),scaleTransform,null);
-    
-    return result;
+    return scale(rFactor, cFactor, Resampler.DEFAULT_FILTER);
+  }
+  
+  /**
+   * Method to create a new picture by scaling the current
+   * picture by the given amounts, blending the pixels with
+   * the given filter
+   * @param rFactor the amount to scale in the height (rows)
+   * @param cFactor the amount to scale in the width (columns)
+   * @param filter the way to blend the pixels
+   * @return the resulting picture
+   */
+  public Picture scale(double rFactor, double cFactor, Resampler.Filter filter)
+  {
+    return Resampler.resize(this, (int) (getWidth() * cFactor),
+                            (int) (getHeight() * rFactor), filter);
   }
   
   /**
@@ -578,7 +852,7 @@ public class SimplePicture implements DigitalPicture
   {
     // set up the scale tranform
     double xFactor = (double) width / this.getWidth();
-    Picture result = scale(xFactor,xFactor);
+    Picture result = scaleFromPyramid(xFactor);
     return result;
   }
   
@@ -593,9 +867,130 @@ public class SimplePicture implements DigitalPicture
   {
     // set up the scale tranform
     double yFactor = (double) height / this.getHeight();
-    Picture result = scale(yFactor,yFactor);
+    Picture result = scaleFromPyramid(yFactor);
     return result;
   }
+  
+  /**
+   * Method to scale the picture by the same amount in both directions,
+   * starting from the smallest level of the pyramid that is big enough
+   * @param factor the amount to scale by
+   * @return the resulting picture
+   */
+  private Picture scaleFromPyramid(double factor)
+  {
+    try
+    {
+      return getPyramid().getPicture((int) (getWidth() * factor),
+                                     (int) (getHeight() * factor),
+                                     Resampler.DEFAULT_FILTER);
+    }
+    catch (IOException ex)
+    {
+      // level 0 was already checked against this picture so it is there
+      throw new IllegalStateException(ex);
+    }
+  }
+  
+  /**
+   * Method to get the pyramid of smaller copies of this picture, each
+   * half the size of the one before.  It is made the first time it is
+   * needed, and getPictureWithWidth and getPictureWithHeight start from
+   * the smallest copy that is big enough.  If the pixels are still the
+   * ones loaded from a file, the pyramid saved next to the file is used
+   * (PicturePyramid.forFile), so later runs don't make it again.
+   * Otherwise the pyramid starts from a copy of the pixels.  Changing
+   * the pixels through this picture throws the pyramid away, and once
+   * the pixels have been handed out (getRaster, getBufferedImage,
+   * getGraphics, and so on) the pyramid is checked against them each
+   * time it is asked for, so it is never out of date.
+   * @return the pyramid for this picture
+   */
+  public PicturePyramid getPyramid()
+  {
+    if (pyramid != null && pixelsHandedOut && !matchesPixels(pyramid))
+    {
+      pyramid = null;
+      pixelFile = null;
+    }
+    if (pyramid == null && pixelFile != null)
+    {
+      // handed out pixels or the file may have changed since it was
+      // loaded, so check before using the pyramid saved for the file
+      try
+      {
+        BufferedImage fileImage = PictureCache.getShared().readShared(pixelFile);
+        if (fileImage != null && (fileImage == bufferedImage ||
+                                  samePixels(PixelRaster.wrap(fileImage))))
+          pyramid = PicturePyramid.forFile(pixelFile.getPath());
+      }
+      catch (IOException ex)
+      {
+        pyramid = null;
+      }
+      if (pyramid == null)
+        pixelFile = null;
+    }
+    if (pyramid == null)
+    {
+      // copy level 0 so the pyramid never sees later changes
+      if (raster == null)
+        useBufferedImage(PixelRaster.toIntImage(bufferedImage));
+      pyramid = new PicturePyramid(new Picture(PictureCache.copy(bufferedImage)));
+    }
+    return pyramid;
+  }
+  
+  /**
+   * Method to check if level 0 of a pyramid has the same pixels as this
+   * picture
+   * @param thePyramid the pyramid to check
+   * @return true if the pyramid was made from these pixels
+   */
+  private boolean matchesPixels(PicturePyramid thePyramid)
+  {
+    try
+    {
+      return samePixels(thePyramid.getLevel(0).getRaster());
+    }
+    catch (IOException ex)
+    {
+      return false;
+    }
+  }
+  
+  /**
+   * Method to check if a raster has the same pixels as this picture.
+   * The alpha is only compared if the picture uses alpha.
+   * @param other the raster to compare with
+   * @return true if the size and every pixel are the same
+   */
+  private boolean samePixels(PixelRaster other)
+  {
+    if (raster == null || other.getWidth() != getWidth() ||
+        other.getHeight() != getHeight() || other.hasAlpha() != raster.hasAlpha())
+      return false;
+    int mask = raster.hasAlpha() ? 0xffffffff : 0x00ffffff;
+    int[] data = raster.getData();
+    int[] otherData = other.getData();
+    for (int y = 0; y < getHeight(); y++)
+    {
+      int index = raster.getIndex(0, y);
+      int otherIndex = other.getIndex(0, y);
+      for (int x = 0; x < getWidth(); x++)
+        if (((data[index + x] ^ otherData[otherIndex + x]) & mask) != 0)
+          return false;
+    }
+    return true;
+  }
+  
+  /**
+   * Method to throw away the pyramid of smaller copies of this picture
+   */
+  public void clearPyramid()
+  {
+    pyramid = null;
+  }
  
  /**
   * Method to load a picture from a file name and show it in a picture frame
@@ -619,6 +1014,8 @@ public class SimplePicture implements DigitalPicture
   * Method to write the contents of the picture to a file with 
   * the passed name
   * @param fileName the name of the file to write the picture to
+  * @throws IOException if the file can't be written or there is no
+  * writer for its extension
   */
  public void writeOrFail(String fileName) throws IOException
  {
@@ -642,13 +1039,19 @@ public class SimplePicture implements DigitalPicture
         " could not be opened. Check to see if you can write to the directory.");
    }
    
-   // get the extension
-   int posDot = fileName.indexOf('.');
+   // get the extension from the file name (not a dot in a directory)
+   int posDot = file.getName().lastIndexOf('.');
    if (posDot >= 0)
-       extension = fileName.substring(posDot + 1);
+       extension = file.getName().substring(posDot + 1);
    
-   // write the contents of the buffered image to the file as jpeg
-   ImageIO.write(bufferedImage, extension, file);
+   // write the contents of the buffered image to the file, without the
+   // alpha if the format can't store it (like jpg)
+   boolean written = ImageIO.write(bufferedImage, extension, file);
+   if (!written && bufferedImage.getColorModel().hasAlpha())
+       written = ImageIO.write(PixelRaster.toOpaqueImage(bufferedImage), extension, file);
+   if (!written)
+       throw new IOException(fileName + " could not be written. There is no writer for " +
+                             extension + " pictures.");
      
  }
 
@@ -736,6 +1139,19 @@ public class SimplePicture implements DigitalPicture
   {
     return getTransformEnclosingRect(trans);
   }
+
+  /**
+   * Method to create a new picture by applying a transform (rotate,
+   * scale or shear) to the current picture.  The new picture is just
+   * big enough to hold the result and the corners it doesn't cover are
+   * white (or clear if this picture uses alpha).
+   * @param trans the transform to apply (its translation doesn't matter)
+   * @return the resulting picture
+   */
+  public Picture warp(AffineTransform trans)
+  {
+    return AffineWarp.warp(this, trans, AffineWarp.Sampling.BILINEAR);
+  }
  
  /**
   * Method to return a string with information about this picture
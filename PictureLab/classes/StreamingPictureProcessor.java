@@ -0,0 +1,399 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.function.Consumer;
+
+/**
+ * Class that runs a filter over a picture file that may be too big to
+ * load all at once.  The file is decoded in horizontal bands of rows
+ * (using a source region of the ImageReader), each band is made into
+ * a Picture and passed to the filter, and the result is written out.
+ *
+ * Only filters that work row by row give the same result as running
+ * them on the whole picture: negate, sepia, zeroBlue, posterize, and
+ * other point operations are fine, but mirrors and copies only see
+ * one band.  The band Picture starts at row 0, so a filter that uses
+ * a rectangle should use the band's own width and height.
+ *
+ * The bands are read with a BandReader.  Only BMP files and TIFF files
+ * stored in strips or tiles are decoded a band at a time.  JPEG, PNG,
+ * GIF (and single strip TIFF) files are decoded whole as one band, and
+ * only if they fit easily in the heap (use subsampling to make them
+ * smaller while they are decoded).
+ *
+ * The TIFF writer takes each band as soon as it is done.  The PNG and
+ * BMP writers are handed an image that filters each band when they
+ * first ask for its rows, so they also never have the whole output in
+ * memory.  The JPEG writer asks for all the pixels at once, so the
+ * bands are gathered first, and only if they fit in the heap.  So a
+ * picture bigger than the heap can go from BMP or tiled/striped TIFF
+ * to TIFF, PNG, or BMP.  If the output format can't store alpha (JPEG,
+ * BMP) the bands are made opaque first, as if laid over black.
+ */
+public class StreamingPictureProcessor
+{
+
+  /////////////////////// Fields /////////////////////////
+
+  /** the default number of rows in a band */
+  public static final int DEFAULT_BAND_HEIGHT = 512;
+
+  /** the number of rows of the input decoded at a time */
+  private int bandHeight = DEFAULT_BAND_HEIGHT;
+
+  /** use every subsamplingX-th column of the input */
+  private int subsamplingX = 1;
+
+  /** use every subsamplingY-th row of the input */
+  private int subsamplingY = 1;
+
+  ////////////////////////// Methods //////////////////////////////////
+
+  /**
+   * Method to set the number of input rows decoded at a time
+   * @param bandHeight the rows per band (at least 1)
+   */
+  public void setBandHeight(int bandHeight)
+  {
+    if (bandHeight < 1)
+      throw new IllegalArgumentException("band height must be at least 1");
+    this.bandHeight = bandHeight;
+  }
+
+  /**
+   * Method to get the number of input rows decoded at a time
+   * @return the rows per band
+   */
+  public int getBandHeight() { return bandHeight; }
+
+  /**
+   * Method to shrink the picture while decoding by only keeping every
+   * xPeriod-th column and every yPeriod-th row.  1 and 1 keeps all.
+   * @param xPeriod the column step (at least 1)
+   * @param yPeriod the row step (at least 1)
+   */
+  public void setSubsampling(int xPeriod, int yPeriod)
+  {
+    if (xPeriod < 1 || yPeriod < 1)
+      throw new IllegalArgumentException("subsampling must be at least 1");
+    this.subsamplingX = xPeriod;
+    this.subsamplingY = yPeriod;
+  }
+
+  /**
+   * Method to filter a picture file band by band and write the result.
+   * File names without a directory are looked up in the media directory
+   * the same way SimplePicture does.
+   * @param inputFileName the picture file to read
+   * @param outputFileName the file to write (its extension sets the format)
+   * @param filter the code to run on each band
+   * @throws IOException if the input can't be read or the output written
+   */
+  public void process(String inputFileName, String outputFileName,
+                      Consumer<Picture> filter) throws IOException
+  {
+    File inputFile = findInputFile(inputFileName);
+    File outputFile = findOutputFile(outputFileName);
+    String format = getExtension(outputFile.getName());
+
+    ImageInputStream input = ImageIO.createImageInputStream(inputFile);
+    if (input == null)
+      throw new IOException(inputFileName + " could not be opened");
+    ImageReader reader = null;
+    ImageWriter writer = null;
+    ImageOutputStream output = null;
+    try {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext())
+        throw new IOException(inputFileName + " is not a picture format that can be read");
+      reader = readers.next();
+      reader.setInput(input, false, true);
+
+      Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix(format);
+      if (!writers.hasNext())
+        throw new IOException("no writer for ." + format + " files");
+      writer = writers.next();
+
+      outputFile.delete();
+      output = ImageIO.createImageOutputStream(outputFile);
+      if (output == null)
+        throw new IOException(outputFileName + " could not be opened for writing");
+      writer.setOutput(output);
+
+      processBands(reader, writer, filter);
+    } finally {
+      if (reader != null)
+        reader.dispose();
+      if (writer != null)
+        writer.dispose();
+      input.close();
+      if (output != null)
+        output.close();
+    }
+  }
+
+  /**
+   * Method that reads, filters, and writes the bands
+   * @param reader the reader with its input set
+   * @param writer the writer with its output set
+   * @param filter the code to run on each band
+   * @throws IOException if reading or writing fails
+   */
+  private void processBands(ImageReader reader, ImageWriter writer,
+                            Consumer<Picture> filter) throws IOException
+  {
+    BandReader bands = new BandReader(reader, bandHeight, subsamplingX, subsamplingY);
+    FilteredBands output = new FilteredBands(bands, filter, writer);
+    if (startIncrementalWrite(writer, output.getBand(0), bands.getWidth(), bands.getHeight()))
+    {
+      for (int band = 0; band < bands.getBandCount(); band++)
+      {
+        BufferedImage image = output.getBand(band);
+        int outputRow = bands.getBandRow(band);
+        ImageWriteParam writeParam = writer.getDefaultWriteParam();
+        writer.prepareReplacePixels(0, new Rectangle(0, outputRow, image.getWidth(),
+                                                     image.getHeight()));
+        writeParam.setDestinationOffset(new Point(0, outputRow));
+        writer.replacePixels(image, writeParam);
+        writer.endReplacePixels();
+      }
+    }
+    else
+    {
+      try {
+        writer.write(output);
+      } catch (UncheckedIOException ex) {
+        throw ex.getCause();
+      }
+    }
+  }
+
+  /**
+   * Method to start writing an empty image that the bands will be
+   * written into, if the writer can do that
+   * @param writer the writer with its output set
+   * @param firstBand the first filtered band (for the pixel layout)
+   * @param width the width of the whole output
+   * @param height the height of the whole output
+   * @return true if the bands can be written one at a time
+   * @throws IOException if writing fails
+   */
+  private boolean startIncrementalWrite(ImageWriter writer, BufferedImage firstBand,
+                                        int width, int height) throws IOException
+  {
+    if (!writer.canWriteEmpty())
+      return false;
+    writer.prepareWriteEmpty(null, ImageTypeSpecifier.createFromRenderedImage(firstBand),
+                             width, height, null, null, null);
+    writer.endWriteEmpty();
+    return writer.canReplacePixels(0);
+  }
+
+  /**
+   * Method to find the file to read, trying the media directory if
+   * the name alone can't be read
+   * @param fileName the name of the file
+   * @return the file
+   * @throws IOException if the file can't be read
+   */
+  private static File findInputFile(String fileName) throws IOException
+  {
+    File file = new File(fileName);
+    if (!file.canRead())
+    {
+      file = new File(FileChooser.getMediaPath(fileName));
+      if (!file.canRead())
+        throw new IOException(fileName +
+                              " could not be opened. Check that you specified the path");
+    }
+    return file;
+  }
+
+  /**
+   * Method to find the file to write, in the media directory if the
+   * name has no directory
+   * @param fileName the name of the file
+   * @return the file
+   * @throws IOException if the directory can't be written to
+   */
+  private static File findOutputFile(String fileName) throws IOException
+  {
+    File file = new File(fileName);
+    if (file.getParentFile() == null)
+      file = new File(FileChooser.getMediaPath(fileName));
+    File fileLoc = file.getParentFile();
+    if (fileLoc == null || !fileLoc.canWrite())
+      throw new IOException(fileName +
+                            " could not be opened. Check to see if you can write to the directory.");
+    return file;
+  }
+
+  /**
+   * Method to get the extension of a file name (jpg, png, tif, etc)
+   * @param fileName the name of the file
+   * @return the part after the last dot
+   * @throws IOException if there is no extension
+   */
+  private static String getExtension(String fileName) throws IOException
+  {
+    int posDot = fileName.lastIndexOf('.');
+    if (posDot < 0)
+      throw new IOException(fileName + " has no extension to pick the picture format");
+    return fileName.substring(posDot + 1).toLowerCase();
+  }
+
+  /**
+   * Class for the filtered picture as an image a writer can ask for
+   * rows of.  Each band is a tile.  A band is read and filtered when
+   * its rows are first asked for, and only the last one is kept, so a
+   * writer that asks for the rows in order (or in reverse) only ever
+   * has one band in memory and each band is read once.
+   */
+  private static class FilteredBands implements RenderedImage
+  {
+    private BandReader bands;
+    private Consumer<Picture> filter;
+    private boolean dropAlpha;
+    private ColorModel colorModel;
+    private SampleModel sampleModel;
+    private int currentBand = -1;
+    private BufferedImage current;
+
+    /**
+     * Constructor that reads the first band to find the pixel layout
+     * @param bands the reader for the bands
+     * @param filter the code to run on each band
+     * @param writer the writer the bands are for
+     * @throws IOException if the first band can't be read
+     */
+    FilteredBands(BandReader bands, Consumer<Picture> filter, ImageWriter writer)
+      throws IOException
+    {
+      this.bands = bands;
+      this.filter = filter;
+      BufferedImage first = filterBand(0);
+      dropAlpha = first.getColorModel().hasAlpha() &&
+        !writer.getOriginatingProvider().canEncodeImage(first);
+      if (dropAlpha)
+        first = PixelRaster.toOpaqueImage(first);
+      currentBand = 0;
+      current = first;
+      colorModel = first.getColorModel();
+      sampleModel = first.getSampleModel().createCompatibleSampleModel(bands.getWidth(),
+                                                                       bands.getBandHeight());
+    }
+
+    /**
+     * Method to read and filter a band
+     * @param band the band
+     * @return the filtered band
+     * @throws IOException if the band can't be read
+     */
+    private BufferedImage filterBand(int band) throws IOException
+    {
+      Picture picture = new Picture(bands.readBand(band));
+      filter.accept(picture);
+      return picture.getBufferedImage();
+    }
+
+    /**
+     * Method to get a filtered band, reading it if it isn't the last
+     * one asked for
+     * @param band the band
+     * @return the filtered band
+     * @throws IOException if the band can't be read
+     */
+    BufferedImage getBand(int band) throws IOException
+    {
+      if (band != currentBand)
+      {
+        current = null;
+        BufferedImage image = filterBand(band);
+        if (dropAlpha)
+          image = PixelRaster.toOpaqueImage(image);
+        current = image;
+        currentBand = band;
+      }
+      return current;
+    }
+
+    public Raster getTile(int tileX, int tileY)
+    {
+      try {
+        Raster raster = getBand(tileY).getRaster();
+        return raster.createChild(0, 0, raster.getWidth(), raster.getHeight(),
+                                  0, bands.getBandRow(tileY), null);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    public Raster getData()
+    {
+      try {
+        BandReader.checkFits(getWidth(), getHeight(), "This writer needs the whole " +
+                             "picture at once; write TIFF, PNG, or BMP instead, or " +
+                             "give Java more memory (-Xmx)");
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      return getData(new Rectangle(0, 0, getWidth(), getHeight()));
+    }
+
+    public Raster getData(Rectangle rect)
+    {
+      WritableRaster raster = Raster.createWritableRaster(
+        sampleModel.createCompatibleSampleModel(rect.width, rect.height),
+        new Point(rect.x, rect.y));
+      return copyData(raster);
+    }
+
+    public WritableRaster copyData(WritableRaster raster)
+    {
+      if (raster == null)
+        return (WritableRaster) getData();
+      int top = Math.max(raster.getMinY(), 0);
+      int bottom = Math.min(raster.getMinY() + raster.getHeight(), getHeight());
+      for (int row = top; row < bottom; row = bands.getBandRow(row / bands.getBandHeight() + 1))
+        raster.setRect(getTile(0, row / bands.getBandHeight()));
+      return raster;
+    }
+
+    public Vector<RenderedImage> getSources() { return null; }
+    public Object getProperty(String name) { return Image.UndefinedProperty; }
+    public String[] getPropertyNames() { return null; }
+    public ColorModel getColorModel() { return colorModel; }
+    public SampleModel getSampleModel() { return sampleModel; }
+    public int getWidth() { return bands.getWidth(); }
+    public int getHeight() { return bands.getHeight(); }
+    public int getMinX() { return 0; }
+    public int getMinY() { return 0; }
+    public int getNumXTiles() { return 1; }
+    public int getNumYTiles() { return bands.getBandCount(); }
+    public int getMinTileX() { return 0; }
+    public int getMinTileY() { return 0; }
+    public int getTileWidth() { return bands.getWidth(); }
+    public int getTileHeight() { return bands.getBandHeight(); }
+    public int getTileGridXOffset() { return 0; }
+    public int getTileGridYOffset() { return 0; }
+  }
+
+}
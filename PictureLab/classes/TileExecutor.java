@@ -0,0 +1,177 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class that splits a rectangle of a picture into tiles and
+ * processes the tiles at the same time on a ForkJoinPool.  A tile
+ * is small enough that its pixels stay in the processor cache while
+ * it is being worked on.  Each tile is handed to the task exactly
+ * once, so a task that only changes the pixels in its own tile gives
+ * the same result as running it on the whole rectangle at once.
+ */
+public class TileExecutor
+{
+  
+  /////////////////////// Fields /////////////////////////
+  
+  /** the default width of a tile in pixels */
+  public static final int TILE_WIDTH = 256;
+  
+  /** the default height of a tile in pixels */
+  public static final int TILE_HEIGHT = 64;
+  
+  /** the pool that runs the tiles */
+  private static ForkJoinPool pool = ForkJoinPool.commonPool();
+  
+  ////////////////////////// Methods //////////////////////////////////
+  
+  /**
+   * Method to get the pool that runs the tiles
+   * @return the fork/join pool
+   */
+  public static ForkJoinPool getPool() { return pool; }
+  
+  /**
+   * Method to set the pool that runs the tiles.  A pool with a
+   * parallelism of 1 makes everything run one tile at a time.
+   * @param thePool the fork/join pool to use
+   */
+  public static void setPool(ForkJoinPool thePool)
+  {
+    pool = thePool;
+  }
+  
+  /**
+   * Method to process a rectangle in tiles of the default size
+   * @param startRow the first row to process
+   * @param startCol the first column to process
+   * @param endRow the row to stop before
+   * @param endCol the column to stop before
+   * @param task the work to do on each tile
+   */
+  public static void execute(int startRow, int startCol, int endRow, int endCol,
+                             RegionTask task)
+  {
+    execute(startRow,startCol,endRow,endCol,TILE_WIDTH,TILE_HEIGHT,task);
+  }
+  
+  /**
+   * Method to process a rectangle in bands of whole rows.  Use this
+   * for work where a pixel depends on others in the same row.
+   * @param startRow the first row to process
+   * @param startCol the first column to process
+   * @param endRow the row to stop before
+   * @param endCol the column to stop before
+   * @param task the work to do on each band of rows
+   */
+  public static void executeRows(int startRow, int startCol, int endRow, int endCol,
+                                 RegionTask task)
+  {
+    // keep about the same number of pixels in a band as in a tile
+    int width = Math.max(endCol - startCol, 1);
+    int bandHeight = Math.max(TILE_WIDTH * TILE_HEIGHT / width, 1);
+    execute(startRow,startCol,endRow,endCol,width,bandHeight,task);
+  }
+  
+  /**
+   * Method to process a rectangle in tiles of the passed size
+   * @param startRow the first row to process
+   * @param startCol the first column to process
+   * @param endRow the row to stop before
+   * @param endCol the column to stop before
+   * @param tileWidth the width of a tile
+   * @param tileHeight the height of a tile
+   * @param task the work to do on each tile
+   */
+  public static void execute(int startRow, int startCol, int endRow, int endCol,
+                             int tileWidth, int tileHeight, RegionTask task)
+  {
+    if (tileWidth < 1 || tileHeight < 1)
+      throw new IllegalArgumentException("tile size must be at least 1x1");
+    
+    // nothing to do for an empty rectangle
+    if (endRow <= startRow || endCol <= startCol)
+      return;
+    
+    // a rectangle that fits in one tile isn't worth handing to the pool
+    if (endRow - startRow <= tileHeight && endCol - startCol <= tileWidth)
+    {
+      task.process(startRow,startCol,endRow,endCol);
+      return;
+    }
+    
+    TileAction action = new TileAction(startRow,startCol,endRow,endCol,
+                                       tileWidth,tileHeight,task);
+    // already on one of the pool's threads (a task inside a task)
+    if (ForkJoinTask.getPool() == pool)
+      action.invoke();
+    else
+      pool.invoke(action);
+  }
+  
+  /**
+   * Class for the fork/join work on a rectangle.  It splits the
+   * rectangle in half on a tile boundary until only one tile is left.
+   */
+  private static class TileAction extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+    
+    private int startRow;
+    private int startCol;
+    private int endRow;
+    private int endCol;
+    private int tileWidth;
+    private int tileHeight;
+    private RegionTask task;
+    
+    /**
+     * Constructor that takes the rectangle, the tile size, and the work
+     */
+    TileAction(int startRow, int startCol, int endRow, int endCol,
+               int tileWidth, int tileHeight, RegionTask task)
+    {
+      this.startRow = startRow;
+      this.startCol = startCol;
+      this.endRow = endRow;
+      this.endCol = endCol;
+      this.tileWidth = tileWidth;
+      this.tileHeight = tileHeight;
+      this.task = task;
+    }
+    
+    /**
+     * Method to do the work, splitting the rectangle if it has
+     * more than one tile
+     */
+    protected void compute()
+    {
+      int tilesAcross = (endCol - startCol + tileWidth - 1) / tileWidth;
+      int tilesDown = (endRow - startRow + tileHeight - 1) / tileHeight;
+      
+      if (tilesAcross <= 1 && tilesDown <= 1)
+      {
+        task.process(startRow,startCol,endRow,endCol);
+      }
+      // split the side with more tiles so the pieces stay close to square
+      else if (tilesDown >= tilesAcross)
+      {
+        int middleRow = startRow + (tilesDown / 2) * tileHeight;
+        invokeAll(new TileAction(startRow,startCol,middleRow,endCol,
+                                 tileWidth,tileHeight,task),
+                  new TileAction(middleRow,startCol,endRow,endCol,
+                                 tileWidth,tileHeight,task));
+      }
+      else
+      {
+        int middleCol = startCol + (tilesAcross / 2) * tileWidth;
+        invokeAll(new TileAction(startRow,startCol,endRow,middleCol,
+                                 tileWidth,tileHeight,task),
+                  new TileAction(startRow,middleCol,endRow,endCol,
+                                 tileWidth,tileHeight,task));
+      }
+    }
+  }
+  
+}